@@ -0,0 +1,173 @@
+package com.bigsonata.example;
+
+import com.bigsonata.swarm.common.whisper.DisruptorBroker;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Compares two ways of funnelling messages from many threads into the single thread which owns the
+ * transport's socket: a multi-producer Disruptor ring (what the transport uses), and a lock-free
+ * MPSC queue drained by a dedicated thread. Each run also checks that every message arrived
+ * exactly once and in order for each producer.
+ *
+ * <p>Usage: TransportRingBenchmark [producers] [messages per producer]
+ */
+public class TransportRingBenchmark {
+  private static final int BUFFER_SIZE = 1024;
+
+  public static void main(String[] args) throws Exception {
+    int producers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+    int messages = args.length > 1 ? Integer.parseInt(args[1]) : 2000000;
+
+    System.out.printf("%d producers, %d messages each%n", producers, messages);
+    System.out.printf("%-12s %15s %10s%n", "funnel", "messages/s", "errors");
+    for (int round = 0; round < 3; round++) {
+      report("disruptor", new RingFunnel(producers), producers, messages);
+      report("mpsc-queue", new QueueFunnel(producers), producers, messages);
+    }
+  }
+
+  private static void report(String name, Funnel funnel, int producers, int messages)
+      throws Exception {
+    try {
+      long start = System.nanoTime();
+      Thread[] threads = new Thread[producers];
+      for (int p = 0; p < producers; p++) {
+        final int producer = p;
+        threads[p] =
+            new Thread(
+                () -> {
+                  try {
+                    for (long i = 0; i < messages; i++) {
+                      funnel.send(new Item(producer, i));
+                    }
+                  } catch (Exception e) {
+                    e.printStackTrace();
+                  }
+                });
+        threads[p].start();
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      long total = (long) producers * messages;
+      while (funnel.checker.received < total) {
+        Thread.sleep(1);
+      }
+      double elapsed = (System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1);
+      System.out.printf("%-12s %15.0f %10d%n", name, total / elapsed, funnel.checker.errors);
+    } finally {
+      funnel.dispose();
+    }
+  }
+
+  private static class Item {
+    final int producer;
+    final long sequence;
+
+    Item(int producer, long sequence) {
+      this.producer = producer;
+      this.sequence = sequence;
+    }
+  }
+
+  /** Runs on the consuming thread only */
+  private static class Checker {
+    final long[] expected;
+    volatile long received = 0;
+    long errors = 0;
+
+    Checker(int producers) {
+      expected = new long[producers];
+    }
+
+    void accept(Item item) {
+      if (item.sequence != expected[item.producer]) {
+        errors++;
+      }
+      expected[item.producer] = item.sequence + 1;
+      received++;
+    }
+  }
+
+  private abstract static class Funnel {
+    final Checker checker;
+
+    Funnel(int producers) {
+      checker = new Checker(producers);
+    }
+
+    abstract void send(Item item) throws Exception;
+
+    abstract void dispose() throws Exception;
+  }
+
+  private static class RingFunnel extends Funnel {
+    final DisruptorBroker<Item> broker;
+
+    RingFunnel(int producers) throws Exception {
+      super(producers);
+      broker =
+          DisruptorBroker.Builder.newInstance()
+              .setBufferSize(BUFFER_SIZE)
+              .setProducerMode(DisruptorBroker.ProducerMode.MULTIPLE)
+              .setMessageHandler((topic, item) -> checker.accept((Item) item))
+              .build();
+      broker.initialize();
+    }
+
+    @Override
+    void send(Item item) throws Exception {
+      broker.produce(item);
+    }
+
+    @Override
+    void dispose() throws Exception {
+      broker.dispose();
+    }
+  }
+
+  private static class QueueFunnel extends Funnel {
+    final Queue<Item> queue = new ConcurrentLinkedQueue<>();
+    final Thread consumer;
+    volatile boolean waiting = false;
+
+    QueueFunnel(int producers) {
+      super(producers);
+      consumer = new Thread(this::drain);
+      consumer.setDaemon(true);
+      consumer.start();
+    }
+
+    void drain() {
+      while (!Thread.currentThread().isInterrupted()) {
+        Item item = queue.poll();
+        if (item != null) {
+          checker.accept(item);
+          continue;
+        }
+        waiting = true;
+        if (queue.isEmpty()) {
+          LockSupport.park(this);
+        }
+        waiting = false;
+      }
+    }
+
+    @Override
+    void send(Item item) {
+      queue.offer(item);
+      if (waiting) {
+        LockSupport.unpark(consumer);
+      }
+    }
+
+    @Override
+    void dispose() {
+      consumer.interrupt();
+    }
+  }
+}
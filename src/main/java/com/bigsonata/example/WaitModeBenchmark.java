@@ -0,0 +1,155 @@
+package com.bigsonata.example;
+
+import com.bigsonata.swarm.common.whisper.DisruptorBroker;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Compares the wait modes of the Disruptor: first the throughput of a ring flooded by a few
+ * producers, then the latency of handing messages over to the consumers at a steady rate.
+ *
+ * <p>Run it on the box you generate load from, with nothing else running. The spinning modes
+ * shine on an idle box with spare cores, and collapse as soon as consumers outnumber them.
+ *
+ * <p>Usage: WaitModeBenchmark [consumers] [messages] [rate]
+ */
+public class WaitModeBenchmark {
+  private static final int BUFFER_SIZE = 32768;
+  private static final int PRODUCERS = 2;
+  private static final int PACED_SECONDS = 3;
+
+  public static void main(String[] args) throws Exception {
+    int consumers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+    int messages = args.length > 1 ? Integer.parseInt(args[1]) : 5000000;
+    int rate = args.length > 2 ? Integer.parseInt(args[2]) : 100000;
+
+    System.out.printf(
+        "%d consumers, %d messages flooded by %d producers, then %d messages/s for %d s%n",
+        consumers, messages, PRODUCERS, rate, PACED_SECONDS);
+    System.out.printf(
+        "%-15s %15s %10s %10s %10s%n", "mode", "messages/s", "p50 (us)", "p99 (us)", "max (us)");
+    for (DisruptorBroker.WaitMode waitMode : DisruptorBroker.WaitMode.values()) {
+      Run run = new Run(waitMode, consumers);
+      try {
+        double throughput = run.flood(messages);
+        run.reset();
+        run.pace(rate, PACED_SECONDS);
+        System.out.printf(
+            "%-15s %15.0f %10d %10d %10d%n",
+            waitMode,
+            throughput,
+            run.percentile(0.5),
+            run.percentile(0.99),
+            run.max.get());
+      } finally {
+        run.dispose();
+      }
+    }
+  }
+
+  private static class Run {
+    final DisruptorBroker<Long> broker;
+    final LongAdder consumed = new LongAdder();
+    final LongAdder[] buckets = new LongAdder[Long.SIZE];
+    final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+    Run(DisruptorBroker.WaitMode waitMode, int consumers) throws Exception {
+      for (int i = 0; i < buckets.length; i++) {
+        buckets[i] = new LongAdder();
+      }
+      broker =
+          DisruptorBroker.Builder.newInstance()
+              .setBufferSize(BUFFER_SIZE)
+              .setParallelism(consumers)
+              .setProducerMode(DisruptorBroker.ProducerMode.MULTIPLE)
+              .setWaitMode(waitMode)
+              .setMessageHandler((topic, sentAt) -> record((Long) sentAt))
+              .build();
+      broker.initialize();
+    }
+
+    void record(long sentAt) {
+      long micros = (System.nanoTime() - sentAt) / 1000;
+      buckets[Long.SIZE - Long.numberOfLeadingZeros(Math.max(0, micros))].increment();
+      max.accumulate(micros);
+      consumed.increment();
+    }
+
+    /** @return Messages per second */
+    double flood(int messages) throws Exception {
+      long start = System.nanoTime();
+      Thread[] producers = new Thread[PRODUCERS];
+      for (int p = 0; p < PRODUCERS; p++) {
+        producers[p] =
+            new Thread(
+                () -> {
+                  try {
+                    for (int i = 0; i < messages / PRODUCERS; i++) {
+                      broker.produce(System.nanoTime());
+                    }
+                  } catch (Exception e) {
+                    e.printStackTrace();
+                  }
+                });
+        producers[p].start();
+      }
+      for (Thread producer : producers) {
+        producer.join();
+      }
+      await(messages / PRODUCERS * PRODUCERS);
+      return consumed.sum() * (double) TimeUnit.SECONDS.toNanos(1) / (System.nanoTime() - start);
+    }
+
+    void pace(int rate, int seconds) throws Exception {
+      long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+      long messages = (long) rate * seconds;
+      long start = System.nanoTime();
+      for (long i = 0; i < messages; i++) {
+        long due = start + i * interval;
+        long now;
+        while ((now = System.nanoTime()) < due) {
+          if (due - now > TimeUnit.MICROSECONDS.toNanos(100)) {
+            LockSupport.parkNanos(due - now);
+          }
+        }
+        broker.produce(System.nanoTime());
+      }
+      await(messages);
+    }
+
+    void await(long messages) throws InterruptedException {
+      while (consumed.sum() < messages) {
+        Thread.sleep(1);
+      }
+    }
+
+    void reset() {
+      for (LongAdder bucket : buckets) {
+        bucket.reset();
+      }
+      max.reset();
+      consumed.reset();
+    }
+
+    /** @return Upper bound (in us) of the bucket holding the percentile */
+    long percentile(double percentile) {
+      long count = consumed.sum();
+      long rank = (long) Math.ceil(percentile * count);
+      long seen = 0;
+      for (int i = 0; i < buckets.length; i++) {
+        seen += buckets[i].sum();
+        if (seen >= rank && seen > 0) {
+          return i == 0 ? 0 : 1L << i;
+        }
+      }
+      return 0;
+    }
+
+    void dispose() throws Exception {
+      broker.dispose();
+    }
+  }
+}
@@ -0,0 +1,42 @@
+package com.bigsonata.swarm;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * A cron whose executions complete asynchronously. The worker which starts an execution is freed
+ * as soon as {@link #processAsync()} returns, while the execution stays in flight until the
+ * returned stage completes.
+ *
+ * <p>Swarm times each execution itself and records it when the stage completes: a success if it
+ * completes normally (with its value as the response length, if it's a number), or a failure if
+ * it completes exceptionally.
+ */
+public abstract class AsyncCron extends Cron {
+  public AsyncCron(Props props) {
+    super(props.setAsync(true));
+  }
+
+  /**
+   * Start an execution
+   *
+   * @return A stage which completes when the execution does
+   */
+  public abstract CompletionStage<?> processAsync();
+
+  @Override
+  public final void process() {
+    processAsync();
+  }
+
+  /**
+   * Start an execution unless Swarm is stopped
+   *
+   * @return A stage which completes when the execution does. Or null if Swarm is stopped
+   */
+  public CompletionStage<?> runAsync() {
+    if (context.locust.isStopped()) {
+      return null;
+    }
+    return processAsync();
+  }
+}
@@ -1,6 +1,9 @@
 package com.bigsonata.swarm;
 
+import com.bigsonata.swarm.common.stats.StatsHandle;
+import com.bigsonata.swarm.common.whisper.DisruptorBroker;
 import com.bigsonata.swarm.services.Scheduler;
+import com.bigsonata.swarm.services.Task;
 
 /** @author anhld on 7/28/18 */
 public class Context {
@@ -10,6 +13,8 @@ public class Context {
   private int statInterval = 3000; // 3s
   private String masterHost = "127.0.0.1";
   private int masterPort = 7778;
+  private int statsBufferSize = 65536;
+  private DisruptorBroker.WaitMode transportWaitMode = DisruptorBroker.WaitMode.BLOCKING;
 
   public static Context getInstance() {
     return instance;
@@ -26,13 +31,41 @@ public class Context {
   }
 
   public void recordFailure(Cron cron, long responseTime, String error) {
-    this.locust.recordFailure(cron.props.type, cron.props.name, responseTime, error);
-    this.scheduler.done();
+    this.recordFailure(cron.getStatsHandle(), responseTime, error);
   }
 
   public void recordSuccess(Cron cron, long responseTime, long responseLength) {
-    this.locust.recordSuccess(cron.props.type, cron.props.name, responseTime, responseLength);
-    this.scheduler.done();
+    this.recordSuccess(cron.getStatsHandle(), responseTime, responseLength);
+  }
+
+  public void recordFailure(StatsHandle handle, long responseTime, String error) {
+    if (Task.isCurrentReclaimed()) {
+      // already recorded as timed out
+      return;
+    }
+    // account for the time spent waiting past the intended start (if any)
+    responseTime += Task.currentDelay();
+    this.locust.recordFailure(handle, responseTime, error);
+  }
+
+  public void recordSuccess(StatsHandle handle, long responseTime, long responseLength) {
+    if (Task.isCurrentReclaimed()) {
+      return;
+    }
+    responseTime += Task.currentDelay();
+    this.locust.recordSuccess(handle, responseTime, responseLength);
+  }
+
+  public void recordSuccessMicros(StatsHandle handle, long latency, long responseLength) {
+    if (Task.isCurrentReclaimed()) {
+      return;
+    }
+    latency += Task.currentDelay() * 1000;
+    this.locust.recordSuccessMicros(handle, latency, responseLength);
+  }
+
+  public StatsHandle intern(String type, String name) {
+    return this.locust.intern(type, name);
   }
 
   public int getStatInterval() {
@@ -44,6 +77,15 @@ public class Context {
     return this;
   }
 
+  public int getStatsBufferSize() {
+    return statsBufferSize;
+  }
+
+  public Context setStatsBufferSize(int statsBufferSize) {
+    this.statsBufferSize = statsBufferSize;
+    return this;
+  }
+
   public int getMasterPort() {
     return masterPort;
   }
@@ -62,6 +104,15 @@ public class Context {
     return this;
   }
 
+  public DisruptorBroker.WaitMode getTransportWaitMode() {
+    return transportWaitMode;
+  }
+
+  public Context setTransportWaitMode(DisruptorBroker.WaitMode transportWaitMode) {
+    this.transportWaitMode = transportWaitMode;
+    return this;
+  }
+
   public String getNodeId() {
     return this.locust.nodeID;
   }
@@ -1,8 +1,10 @@
 package com.bigsonata.swarm;
 
+import com.bigsonata.swarm.common.stats.StatsHandle;
+
 public abstract class Cron implements Cloneable, Runnable {
   protected final Props props;
-  private final Context context = Context.getInstance();
+  final Context context = Context.getInstance();
 
   public Cron(Props props) {
     this.props = props;
@@ -16,6 +18,39 @@ public abstract class Cron implements Cloneable, Runnable {
     return this.props.name;
   }
 
+  public int getConcurrency() {
+    return this.props.concurrency;
+  }
+
+  public long getTimeout() {
+    return this.props.timeout;
+  }
+
+  public int getMaxRps() {
+    return this.props.maxRps;
+  }
+
+  public long getPacing() {
+    return this.props.pacing;
+  }
+
+  public long getMinThinkTime() {
+    return this.props.minThinkTime;
+  }
+
+  public long getMaxThinkTime() {
+    return this.props.maxThinkTime;
+  }
+
+  /**
+   * Get the cron to run for the next execution
+   *
+   * @return This cron, unless it stands for several ones
+   */
+  public Cron select() {
+    return this;
+  }
+
   public abstract void process();
 
   public abstract Cron clone();
@@ -25,11 +60,11 @@ public abstract class Cron implements Cloneable, Runnable {
   }
 
   public void recordFailure(String type, long responseTime, String error) {
-    this.context.recordFailure(this, responseTime, error);
+    this.context.recordFailure(getStatsHandle(type), responseTime, error);
   }
 
   public void recordSuccess(String type, long responseTime, long responseLength) {
-    this.context.recordSuccess(this, responseTime, responseLength);
+    this.context.recordSuccess(getStatsHandle(type), responseTime, responseLength);
   }
 
   public void recordSuccess(String type, long responseTime) {
@@ -44,6 +79,72 @@ public abstract class Cron implements Cloneable, Runnable {
     this.recordSuccess(this.props.type, responseTime, 0);
   }
 
+  /**
+   * Record a successful request timed to the microsecond, for precise local percentiles
+   *
+   * @param latency Response time (in us)
+   * @param responseLength Content size
+   */
+  public void recordSuccessMicros(long latency, long responseLength) {
+    this.context.recordSuccessMicros(getStatsHandle(), latency, responseLength);
+  }
+
+  /**
+   * Record a successful request under another name, e.g. one known at runtime only
+   *
+   * @param handle Handle of the name, see {@link #intern(String, String)}
+   * @param responseTime Response time (in ms)
+   * @param responseLength Content size
+   */
+  public void recordSuccess(StatsHandle handle, long responseTime, long responseLength) {
+    this.context.recordSuccess(handle, responseTime, responseLength);
+  }
+
+  /**
+   * Record a failed request under another name, e.g. one known at runtime only
+   *
+   * @param handle Handle of the name, see {@link #intern(String, String)}
+   * @param responseTime Response time (in ms)
+   * @param error Error
+   */
+  public void recordFailure(StatsHandle handle, long responseTime, String error) {
+    this.context.recordFailure(handle, responseTime, error);
+  }
+
+  /**
+   * Get the handle of a name to record requests under. Best kept rather than interned again for
+   * every request
+   *
+   * @param type Type (GET, POST or whatever)
+   * @param name Name
+   * @return The handle
+   */
+  public StatsHandle intern(String type, String name) {
+    return this.context.intern(type, name);
+  }
+
+  /**
+   * Get the handle this cron records its requests with. Resolved on its first request, then kept
+   * in its props
+   *
+   * @return The handle
+   */
+  StatsHandle getStatsHandle() {
+    StatsHandle handle = this.props.statsHandle;
+    if (handle == null) {
+      handle = this.context.intern(this.props.type, this.props.name);
+      this.props.statsHandle = handle;
+    }
+    return handle;
+  }
+
+  private StatsHandle getStatsHandle(String type) {
+    if (type == null || type.equals(this.props.type)) {
+      return getStatsHandle();
+    }
+    return this.context.intern(type, this.props.name);
+  }
+
   @Override
   public void run() {
     if (!context.locust.isStopped()) process();
@@ -0,0 +1,123 @@
+package com.bigsonata.swarm;
+
+/**
+ * A target (user count or RPS) which changes over time. Swarm samples it periodically once a test
+ * starts, and adjusts the load accordingly.
+ */
+@FunctionalInterface
+public interface LoadShape {
+
+  /**
+   * A constant target
+   *
+   * @param value The target
+   * @param duration How long it lasts (in ms)
+   * @return The shape
+   */
+  static LoadShape constant(double value, long duration) {
+    return (elapsed) -> elapsed < duration ? value : -1;
+  }
+
+  /**
+   * A target which increases (or decreases) by a fixed amount at fixed intervals
+   *
+   * @param start The first target
+   * @param step The amount added at every step
+   * @param stepDuration How long each step lasts (in ms)
+   * @param steps Number of steps
+   * @return The shape
+   */
+  static LoadShape step(double start, double step, long stepDuration, int steps) {
+    return (elapsed) -> {
+      long index = elapsed / stepDuration;
+      return index < steps ? start + step * index : -1;
+    };
+  }
+
+  /**
+   * A target which moves linearly from one value to another
+   *
+   * @param from The first target
+   * @param to The last target
+   * @param duration How long it lasts (in ms)
+   * @return The shape
+   */
+  static LoadShape ramp(double from, double to, long duration) {
+    return piecewise(new long[] {0, duration}, new double[] {from, to});
+  }
+
+  /**
+   * A constant target with a single spike
+   *
+   * @param base The usual target
+   * @param peak The target during the spike
+   * @param at When the spike starts (in ms)
+   * @param spikeDuration How long the spike lasts (in ms)
+   * @param duration How long the whole shape lasts (in ms)
+   * @return The shape
+   */
+  static LoadShape spike(double base, double peak, long at, long spikeDuration, long duration) {
+    return (elapsed) -> {
+      if (elapsed >= duration) {
+        return -1;
+      }
+      return elapsed >= at && elapsed < at + spikeDuration ? peak : base;
+    };
+  }
+
+  /**
+   * A target which oscillates around a mean value
+   *
+   * @param mean The mean target
+   * @param amplitude The maximum distance from the mean
+   * @param period Duration of a full oscillation (in ms)
+   * @param duration How long the whole shape lasts (in ms)
+   * @return The shape
+   */
+  static LoadShape sine(double mean, double amplitude, long period, long duration) {
+    return (elapsed) -> {
+      if (elapsed >= duration) {
+        return -1;
+      }
+      return Math.max(0, mean + amplitude * Math.sin(2 * Math.PI * elapsed / period));
+    };
+  }
+
+  /**
+   * A target which moves linearly between the given points. To hold a target, give two points
+   * with the same value
+   *
+   * @param times Time of each point (in ms, ascending)
+   * @param values Target at each point
+   * @return The shape
+   */
+  static LoadShape piecewise(long[] times, double[] values) {
+    if (times.length == 0 || times.length != values.length) {
+      throw new IllegalArgumentException("Must provide as many times as values");
+    }
+    long[] xs = times.clone();
+    double[] ys = values.clone();
+    return (elapsed) -> {
+      if (elapsed > xs[xs.length - 1]) {
+        return -1;
+      }
+      int i = 1;
+      while (i < xs.length && xs[i] < elapsed) {
+        i++;
+      }
+      if (i == xs.length || xs[i] == xs[i - 1]) {
+        return ys[i - 1];
+      }
+      double ratio = (elapsed - xs[i - 1]) / (double) (xs[i] - xs[i - 1]);
+      return ys[i - 1] + (ys[i] - ys[i - 1]) * Math.max(0, ratio);
+    };
+  }
+
+  /**
+   * Get the target at a given time
+   *
+   * @param elapsed Time since the test started (in ms)
+   * @return The target. Or a negative number once the shape is over
+   */
+  double valueAt(long elapsed);
+}
@@ -3,19 +3,32 @@ package com.bigsonata.swarm;
 import com.bigsonata.swarm.common.Disposable;
 import com.bigsonata.swarm.common.Initializable;
 import com.bigsonata.swarm.common.Utils;
+import com.bigsonata.swarm.common.VirtualThreads;
+import com.bigsonata.swarm.common.stats.StatsHandle;
+import com.bigsonata.swarm.common.whisper.DisruptorBroker;
 import com.bigsonata.swarm.interop.Message;
 import com.bigsonata.swarm.interop.Transport;
 import com.bigsonata.swarm.interop.ZeroTransport;
+import com.bigsonata.swarm.services.ArrivalProcess;
+import com.bigsonata.swarm.services.Autoscaler;
 import com.bigsonata.swarm.services.Beat;
+import com.bigsonata.swarm.services.ExecutionMode;
+import com.bigsonata.swarm.services.Governor;
 import com.bigsonata.swarm.services.Scheduler;
-import com.bigsonata.swarm.common.stats.RequestFailure;
-import com.bigsonata.swarm.common.stats.RequestSuccess;
+import com.bigsonata.swarm.services.Shaper;
 import com.bigsonata.swarm.services.Stats;
-import com.google.common.util.concurrent.RateLimiter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -49,11 +62,33 @@ public class Locust implements Disposable, Initializable {
   private AtomicReference<State> state = new AtomicReference<>(State.IDLE);
   /** Task instances submitted by user. */
   private List<Cron> prototypes;
+  /** Running clones of each prototype */
+  private final Map<Cron, Deque<Cron>> clones = new IdentityHashMap<>();
+  /** Stopped clones of each prototype, kept initialized for the next hatch. Guarded by clones */
+  private final Map<Cron, Deque<Cron>> warm = new IdentityHashMap<>();
+  /** Number of warm clones. Guarded by clones */
+  private int warmCount = 0;
 
   /** Hatch rate required by the master. Hatch rate means clients/s. */
   private double hatchRate = 0;
 
+  /** Runs hatches, away from the transport's receiver thread */
+  private ExecutorService control;
+  /** Initializes clones in parallel while hatching */
+  private ExecutorService initializers;
+  /** Bounds the number of clones being initialized at once */
+  private Semaphore initializing;
+  /** The hatch in progress, if any */
+  private Future<?> hatching = null;
+  /** Bumped by every hatch, so that a superseded one can't complete */
+  private int hatchGeneration = 0;
+
   private Beat beatService;
+  private Shaper shaperService = null;
+  private Autoscaler autoscalerService = null;
+  private Governor governorService = null;
+  /** Whether hatching waits for the governor to let go */
+  private volatile boolean hatchingPaused = false;
 
   private Locust(Builder builder) {
     this.builder = builder;
@@ -69,11 +104,15 @@ public class Locust implements Disposable, Initializable {
 
   public void initialize() {
     initializeScheduler();
+    initializeHatchers();
     initializeShutdownHook();
     initializeContext();
     initializeTransport();
     initializeStatsService();
     initializeCrons();
+    initializeShaperService();
+    initializeAutoscalerService();
+    initializeGovernorService();
   }
 
   private void initializeContext() {
@@ -83,6 +122,8 @@ public class Locust implements Disposable, Initializable {
             .setMasterHost(builder.masterHost)
             .setMasterPort(builder.masterPort)
             .setStatInterval(builder.statInterval)
+            .setStatsBufferSize(builder.statsBufferSize)
+            .setTransportWaitMode(builder.transportWaitMode)
             .setScheduler(scheduler);
   }
 
@@ -91,11 +132,32 @@ public class Locust implements Disposable, Initializable {
         Scheduler.newBuilder()
             .setBufferSize(builder.bufferSize)
             .setMaxRps(builder.maxRps)
+            .setArrivalRate(builder.arrivalRate)
+            .setArrivalProcess(builder.arrivalProcess)
             .setParallelism(builder.threads)
+            .setExecutionMode(builder.executionMode)
+            .setSaturationThreshold(builder.saturationThreshold)
+            .setWaitMode(builder.schedulerWaitMode)
             .setLocust(this)
             .build();
   }
 
+  private void initializeHatchers() {
+    control = Executors.newSingleThreadExecutor(newThreadFactory("swarm-control"));
+    initializers =
+        Executors.newFixedThreadPool(builder.hatchThreads, newThreadFactory("swarm-hatcher"));
+    initializing = new Semaphore(builder.hatchThreads);
+  }
+
+  private static ThreadFactory newThreadFactory(String name) {
+    AtomicInteger counter = new AtomicInteger(0);
+    return r -> {
+      Thread t = new Thread(r, name + "-" + counter.getAndIncrement());
+      t.setDaemon(true);
+      return t;
+    };
+  }
+
   private void onReady() {
     sendReady();
     initializeHeartBeatService();
@@ -141,6 +203,46 @@ public class Locust implements Disposable, Initializable {
     beatService.initialize();
   }
 
+  private void initializeShaperService() {
+    if (builder.userShape == null && builder.rpsShape == null) {
+      return;
+    }
+    shaperService =
+        new Shaper(this, builder.userShape, builder.rpsShape, builder.shapeInterval);
+    shaperService.initialize();
+  }
+
+  private void initializeAutoscalerService() {
+    if (builder.latencyTarget <= 0) {
+      return;
+    }
+    autoscalerService =
+        new Autoscaler(
+            this,
+            statsService,
+            builder.autoscaleTarget,
+            builder.latencyPercentile,
+            builder.latencyTarget,
+            Math.max(builder.autoscaleInterval, builder.statInterval));
+    autoscalerService.initialize();
+  }
+
+  private void initializeGovernorService() {
+    if (builder.maxCpu <= 0 && builder.maxGc <= 0 && builder.maxHeap <= 0) {
+      return;
+    }
+    governorService =
+        new Governor(
+            this,
+            scheduler,
+            statsService,
+            builder.maxCpu,
+            builder.maxGc,
+            builder.maxHeap,
+            builder.governorInterval);
+    governorService.initialize();
+  }
+
   private synchronized void initializeCrons() {
     if (this.started) {
       // Don't call Locust.register() multiply times.
@@ -148,11 +250,21 @@ public class Locust implements Disposable, Initializable {
     }
 
     this.prototypes = builder.crons;
+    if (builder.weightMode == WeightMode.PER_REQUEST && builder.crons.size() > 1) {
+      // every user runs all the crons, picked per request
+      this.prototypes = Collections.singletonList(new WeightedCron(builder.crons));
+    }
+    for (Cron prototype : prototypes) {
+      clones.put(prototype, new ConcurrentLinkedDeque<>());
+      warm.put(prototype, new ArrayDeque<>());
+    }
     this.state.set(State.Ready);
     this.started = true;
   }
 
   private void sendReport(Map data) {
+    // one snapshot per stats interval, reported or not
+    Map<String, Object> saturation = scheduler.getSaturation().snapshot();
     State currentState = this.state.get();
 
     boolean updatable = (currentState == State.Running || currentState == State.Hatching);
@@ -162,6 +274,7 @@ public class Locust implements Disposable, Initializable {
     }
 
     data.put("user_count", actualNumClients.get());
+    data.put("saturation", saturation);
 
     try {
       transport.send(new Message("stats", data, nodeID));
@@ -182,23 +295,53 @@ public class Locust implements Disposable, Initializable {
       return;
     }
 
+    if (message.isRps()) {
+      onRps(message);
+      return;
+    }
+
     if (message.isQuit()) {
       onQuit();
     }
   }
 
+  private void onRps(Message message) {
+    Map data = message.getData();
+    Object rps = data == null ? null : data.get("rps");
+    if (rps == null) {
+      logger.error("Got a `rps` message without any RPS, ignoring it");
+      return;
+    }
+    try {
+      setTargetRps(Double.parseDouble(rps.toString()));
+    } catch (NumberFormatException e) {
+      logger.error("Got a `rps` message with an invalid RPS: {}", rps);
+    }
+  }
+
   private void onQuit() {
     logger.info("Got `quit` message from master, shutting down...");
     System.exit(0);
   }
 
   private void onStop() throws Exception {
-    if (!isStoppable()) {
-      return;
+    synchronized (this) {
+      if (!isStoppable()) {
+        return;
+      }
+      logger.info("Received message STOP from master, all the workers are stopped");
+      cancelHatching();
+      synchronized (clones) {
+        this.state.set(State.Stopped);
+        // the clones left out are disposed already
+        Set<Cron> parked = this.scheduler.park();
+        this.clones.forEach(
+            (prototype, running) ->
+                running.stream().filter(parked::contains).forEach((c) -> park(prototype, c)));
+        this.clones.values().forEach(Deque::clear);
+      }
     }
-    logger.info("Received message STOP from master, all the workers are stopped");
-    this.state.set(State.Stopped);
-    this.scheduler.stop();
+    logger.info(statsService.summarize());
 
     transport.send(new Message("client_stopped", null, nodeID));
     transport.send(new Message("client_ready", null, nodeID));
@@ -269,12 +412,74 @@ public class Locust implements Disposable, Initializable {
    * @param responseLength Content size
    */
   public void recordSuccess(String type, String name, long responseTime, long responseLength) {
-    RequestSuccess success = new RequestSuccess();
-    success.type = type;
-    success.name = name;
-    success.responseTime = responseTime;
-    success.responseLength = responseLength;
-    statsService.report(success);
+    statsService.recordSuccess(type, name, responseTime, responseLength);
+  }
+
+  /**
+   * Same as recordSuccess, with a response time in us. Reported to master in ms, but kept to the
+   * microsecond for local percentiles
+   *
+   * @param type Type (GET, POST or whatever)
+   * @param name Name (API name)
+   * @param latency Response time (in us)
+   * @param responseLength Content size
+   */
+  public void recordSuccessMicros(String type, String name, long latency, long responseLength) {
+    statsService.recordSuccessMicros(type, name, latency, responseLength);
+  }
+
+  /**
+   * Get the handle of a (type, name) pair, to record its requests without looking it up every
+   * time. Always the same one for the same pair
+   *
+   * @param type Type (GET, POST or whatever)
+   * @param name Name (API name)
+   * @return The handle
+   */
+  public StatsHandle intern(String type, String name) {
+    return statsService.intern(type, name);
+  }
+
+  /**
+   * Same as recordSuccess, with a pre-resolved handle
+   *
+   * @param handle Handle, see {@link #intern(String, String)}
+   * @param responseTime Response time (in ms)
+   * @param responseLength Content size
+   */
+  public void recordSuccess(StatsHandle handle, long responseTime, long responseLength) {
+    statsService.recordSuccess(handle, responseTime, responseLength);
+  }
+
+  /**
+   * Same as recordSuccessMicros, with a pre-resolved handle
+   *
+   * @param handle Handle, see {@link #intern(String, String)}
+   * @param latency Response time (in us)
+   * @param responseLength Content size
+   */
+  public void recordSuccessMicros(StatsHandle handle, long latency, long responseLength) {
+    statsService.recordSuccessMicros(handle, latency, responseLength);
+  }
+
+  /**
+   * Same as recordFailure, with a pre-resolved handle
+   *
+   * @param handle Handle, see {@link #intern(String, String)}
+   * @param responseTime Response time (in ms)
+   * @param error Error
+   */
+  public void recordFailure(StatsHandle handle, long responseTime, String error) {
+    statsService.recordFailure(handle, responseTime, error);
+  }
+
+  /**
+   * Get the stats service, e.g. to query local latency percentiles
+   *
+   * @return The stats service
+   */
+  public Stats getStats() {
+    return statsService;
   }
 
   public void recordSuccess(String type, String name, long responseTime) {
@@ -290,12 +495,7 @@ public class Locust implements Disposable, Initializable {
    * @param error Error
    */
   public void recordFailure(String type, String name, long responseTime, String error) {
-    RequestFailure failure = new RequestFailure();
-    failure.type = type;
-    failure.name = name;
-    failure.responseTime = responseTime;
-    failure.error = error;
-    statsService.report(failure);
+    statsService.recordFailure(type, name, responseTime, error);
   }
 
   public State getState() {
@@ -306,12 +506,79 @@ public class Locust implements Disposable, Initializable {
     return getState().equals(Locust.State.Stopped);
   }
 
-  private void spawn(int cronCount) {
+  public boolean isRunning() {
+    return isStoppable();
+  }
+
+  /**
+   * Whether this generator failed to keep up with the load during the last stats interval. If so,
+   * its stats may reflect its own lag rather than the target's latencies
+   *
+   * @return True if saturated
+   */
+  public boolean isSaturated() {
+    return scheduler.getSaturation().isSaturated();
+  }
+
+  /**
+   * Get the number of users currently hatched
+   *
+   * @return Number of users
+   */
+  public int getUserCount() {
+    return actualNumClients.get();
+  }
+
+  /**
+   * Change the number of users on the fly, at the current hatch rate. Clones are added or
+   * disposed as needed, while the others keep running and stats are kept
+   *
+   * @param userCount Number of users
+   */
+  public void setUserCount(int userCount) {
+    setUserCount(userCount, this.hatchRate > 0 ? this.hatchRate : Math.max(1, userCount));
+  }
+
+  /**
+   * Change the number of users on the fly. Clones are added or disposed as needed, while the
+   * others keep running and stats are kept
+   *
+   * @param userCount Number of users
+   * @param hatchRate Number of users to add per second
+   */
+  public void setUserCount(int userCount, double hatchRate) {
+    sendHatching();
+    startHatching(userCount, hatchRate);
+  }
+
+  /**
+   * Pause or resume hatching new clones. A hatch in progress simply waits, and its pacing picks up
+   * where it left off
+   *
+   * @param paused Whether to pause
+   */
+  public void setHatchingPaused(boolean paused) {
+    this.hatchingPaused = paused;
+  }
+
+  /**
+   * Change the target RPS on the fly: the arrival rate when running with one, or the maximum RPS
+   * otherwise. Stats are kept
+   *
+   * @param rps Requests per second. Zero or a negative number removes the maximum RPS, but is
+   *     ignored when running with an arrival rate
+   */
+  public void setTargetRps(double rps) {
+    this.scheduler.setTargetRps(rps);
+  }
+
+  private void spawn(int generation, int cronCount, double hatchRate)
+      throws InterruptedException {
     logger.info(
-        "Hatching and swarming {} clients at the rate of {} clients/s...",
-        cronCount,
-        this.hatchRate);
-    final RateLimiter rateLimiter = RateLimiter.create(this.hatchRate);
+        "Hatching and swarming {} clients at the rate of {} clients/s...", cronCount, hatchRate);
+
+    // let the clones still being initialized by a previous hatch land first
+    awaitInitializers();
 
     float weightSum = 0;
     for (Cron cron : this.prototypes) {
@@ -319,7 +586,9 @@ public class Locust implements Disposable, Initializable {
     }
 
     // rescale
-    for (Cron prototype : this.prototypes) {
+    int[] amounts = new int[this.prototypes.size()];
+    for (int index = 0; index < amounts.length; index++) {
+      Cron prototype = this.prototypes.get(index);
       float percent;
 
       if (0 == weightSum) {
@@ -334,32 +603,148 @@ public class Locust implements Disposable, Initializable {
       }
 
       logger.info("> {}={}", prototype.getName(), amount);
+      amounts[index] = amount;
+    }
 
-      for (int i = 1; i <= amount; i++) {
-        rateLimiter.acquire();
-        if (isStopped()) {
-          return;
+    // dispose surplus clones first
+    synchronized (clones) {
+      if (isStopped()) {
+        return;
+      }
+      for (int index = 0; index < amounts.length; index++) {
+        Deque<Cron> running = clones.get(this.prototypes.get(index));
+        List<Cron> surplus = new ArrayList<>();
+        while (running.size() > amounts[index]) {
+          surplus.add(running.pollLast());
+        }
+        if (!surplus.isEmpty()) {
+          this.scheduler.retire(surplus);
+          actualNumClients.addAndGet(-surplus.size());
+        }
+      }
+    }
+
+    // clones are released at the hatch rate, but initialized in parallel
+    final long interval = hatchRate > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / hatchRate) : 0;
+    long startedAt = System.nanoTime();
+    long released = 0;
+    for (int index = 0; index < amounts.length; index++) {
+      Cron prototype = this.prototypes.get(index);
+      Deque<Cron> running = clones.get(prototype);
+      int missing = amounts[index] - running.size();
+      for (int i = 0; i < missing; i++) {
+        if (Thread.interrupted()) {
+          throw new InterruptedException();
+        }
+        if (hatchingPaused) {
+          long pausedAt = System.nanoTime();
+          while (hatchingPaused) {
+            TimeUnit.MILLISECONDS.sleep(10);
+          }
+          startedAt += System.nanoTime() - pausedAt;
+        }
+        long wait = startedAt + released++ * interval - System.nanoTime();
+        if (wait > 0) {
+          TimeUnit.NANOSECONDS.sleep(wait);
+        }
+        initializing.acquire();
+        try {
+          initializers.execute(() -> hatch(prototype, running));
+        } catch (RejectedExecutionException e) {
+          // disposed meanwhile
+          initializing.release();
+          throw new InterruptedException();
         }
+      }
+    }
 
-        Cron clone = prototype.clone();
+    awaitInitializers();
+    this.onHatchCompleted(generation);
+  }
+
+  /**
+   * Take a warm clone or initialize a new one, then submit it unless the test has been stopped
+   * meanwhile
+   *
+   * @param prototype The cron to clone
+   * @param running Running clones of the prototype
+   */
+  private void hatch(Cron prototype, Deque<Cron> running) {
+    try {
+      Cron clone;
+      synchronized (clones) {
+        clone = warm.get(prototype).poll();
+        if (clone != null) {
+          warmCount--;
+        }
+      }
+      if (clone == null) {
+        clone = prototype.clone();
         clone.initialize(); // initialize them first
+      }
+      synchronized (clones) {
+        if (isStopped()) {
+          park(prototype, clone);
+          return;
+        }
+        running.add(clone);
         this.scheduler.submit(clone);
         actualNumClients.incrementAndGet();
       }
+    } catch (Exception e) {
+      e.printStackTrace();
+      logger.error("Can NOT hatch a clone of {}", prototype.getName());
+    } finally {
+      initializing.release();
+    }
+  }
+
+  /**
+   * Keep a stopped clone initialized for the next hatch, or dispose it if the warm pool is full.
+   * Must hold the clones lock
+   *
+   * @param prototype The cron it was cloned from
+   * @param clone The stopped clone
+   */
+  private void park(Cron prototype, Cron clone) {
+    if (warmCount >= builder.warmPoolSize) {
+      clone.dispose();
+      return;
     }
+    warm.get(prototype).push(clone);
+    warmCount++;
+  }
 
-    this.onHatchCompleted();
+  private void awaitInitializers() throws InterruptedException {
+    initializing.acquire(builder.hatchThreads);
+    initializing.release(builder.hatchThreads);
   }
 
-  protected void startHatching(int spawnCount, double hatchRate) {
+  private void cancelHatching() {
+    if (hatching != null) {
+      hatching.cancel(true);
+      hatching = null;
+    }
+  }
+
+  /**
+   * Start hatching on the control thread, cancelling the hatch in progress (if any). Returns
+   * right away
+   *
+   * @param spawnCount Number of users
+   * @param hatchRate Number of users to add per second
+   */
+  protected synchronized void startHatching(int spawnCount, double hatchRate) {
     State currentState = this.state.get();
-    if (currentState != State.Ready && currentState != State.Stopped) {
+    if (currentState == State.IDLE) {
       logger.error("Invalid state. Terminating now...");
       this.dispose();
       System.exit(-1);
     }
-    statsService.clearAll();
-    this.numCrons = spawnCount;
+    if (currentState == State.Ready || currentState == State.Stopped) {
+      statsService.clearAll();
+      this.actualNumClients.set(0);
+    }
 
     logger.info("Start hatching...");
     logger.info("> spawnCount={}", spawnCount);
@@ -367,17 +752,37 @@ public class Locust implements Disposable, Initializable {
 
     this.state.set(State.Hatching);
 
-    this.actualNumClients.set(0);
     this.hatchRate = hatchRate;
     this.numCrons = spawnCount;
-    this.spawn(numCrons);
+
+    cancelHatching();
+    if (control.isShutdown()) {
+      logger.warn("Disposed, not hatching");
+      return;
+    }
+    final int generation = ++hatchGeneration;
+    hatching =
+        control.submit(
+            () -> {
+              try {
+                spawn(generation, spawnCount, hatchRate);
+              } catch (InterruptedException e) {
+                logger.info("Hatching cancelled");
+              } catch (Exception e) {
+                e.printStackTrace();
+                logger.error("Failed to hatch: {}", e.getMessage());
+              }
+            });
   }
 
-  protected void onHatchCompleted() {
+  protected synchronized void onHatchCompleted(int generation) {
+    if (generation != hatchGeneration || this.state.get() != State.Hatching) {
+      // superseded or stopped meanwhile
+      return;
+    }
     sendHatchCompleted();
     this.state.set(State.Running);
   }
-
   /**
    * Send data to Locust Master
    *
@@ -423,13 +828,37 @@ public class Locust implements Disposable, Initializable {
     logger.warn("Disposing...");
     sendQuit();
 
-    this.state.set(State.Stopped);
+    synchronized (this) {
+      this.state.set(State.Stopped);
+      cancelHatching();
+      // under the lock, so no hatch can start on a shut down executor
+      control.shutdownNow();
+      initializers.shutdownNow();
+    }
+
+    if (shaperService != null) {
+      shaperService.dispose();
+    }
+    if (autoscalerService != null) {
+      autoscalerService.dispose();
+    }
+    if (governorService != null) {
+      governorService.dispose();
+    }
 
     for (Cron cron : prototypes) {
       cron.dispose();
     }
 
     scheduler.dispose();
+    if (statsService != null) {
+      logger.info(statsService.summarize());
+    }
+    synchronized (clones) {
+      warm.values().forEach((parked) -> parked.forEach(Cron::dispose));
+      warm.values().forEach(Deque::clear);
+      warmCount = 0;
+    }
     transport.dispose();
 
     logger.info("Bye bye!");
@@ -461,9 +890,30 @@ public class Locust implements Disposable, Initializable {
     private int masterPort = 5557;
     private int bufferSize = 32768;
     private int threads = 8;
+    private int hatchThreads = Runtime.getRuntime().availableProcessors();
+    private int warmPoolSize = 0;
+    private long saturationThreshold = 10;
+    private double maxCpu = 0;
+    private double maxGc = 0;
+    private double maxHeap = 0;
+    private int governorInterval = 1000;
+    private DisruptorBroker.WaitMode schedulerWaitMode = DisruptorBroker.WaitMode.BLOCKING;
+    private DisruptorBroker.WaitMode transportWaitMode = DisruptorBroker.WaitMode.BLOCKING;
     private int statInterval = 2000;
+    private int statsBufferSize = 65536;
     private int randomSeed = 0;
     private int maxRps = 0;
+    private double arrivalRate = 0;
+    private ExecutionMode executionMode = ExecutionMode.DISRUPTOR;
+    private LoadShape userShape = null;
+    private LoadShape rpsShape = null;
+    private int shapeInterval = 1000;
+    private long latencyTarget = 0;
+    private double latencyPercentile = 0.99;
+    private Autoscaler.Target autoscaleTarget = Autoscaler.Target.USERS;
+    private int autoscaleInterval = 10000;
+    private WeightMode weightMode = WeightMode.PER_USER;
+    private ArrivalProcess arrivalProcess = ArrivalProcess.FIXED;
     private List<Cron> crons = null;
 
     public static Builder newInstance() {
@@ -474,9 +924,18 @@ public class Locust implements Disposable, Initializable {
       if ((bufferSize & (bufferSize - 1)) != 0) {
         throw new Exception("Disruptor capacity must be a power of 2");
       }
+      if (statsBufferSize <= 0 || (statsBufferSize & (statsBufferSize - 1)) != 0) {
+        throw new Exception("Stats buffer size must be a power of 2");
+      }
       if (crons == null) {
         throw new Exception("Must provide Crons");
       }
+      if (hatchThreads < 1) {
+        throw new Exception("Must have at least 1 hatch thread");
+      }
+      if (executionMode == ExecutionMode.VIRTUAL_THREADS && !VirtualThreads.isSupported()) {
+        throw new Exception("Virtual threads require JDK 21+");
+      }
       return new Locust(this);
     }
 
@@ -518,6 +977,82 @@ public class Locust implements Disposable, Initializable {
       return this;
     }
 
+    /**
+     * [Optional] Number of threads to initialize clones while hatching, so that slow
+     * initializations (e.g. opening connections) don't hold the hatch rate back. Default: number
+     * of processors
+     *
+     * @param hatchThreads Number of threads
+     * @return The current Builder instance
+     */
+    public Builder setHatchThreads(int hatchThreads) {
+      this.hatchThreads = hatchThreads;
+      return this;
+    }
+
+    /**
+     * [Optional] Keep up to this many clones initialized when a test stops, and reuse them for
+     * the next hatch instead of cloning and initializing the prototypes again. Worth it for crons
+     * with costly initializations (connection pools, TLS sessions, preloaded payloads). Warm
+     * clones are disposed on shutdown. Default: 0 (disabled)
+     *
+     * <p>NOTE: Clones disposed because the number of users went down are not kept, neither are
+     * clones still finishing an execution when the test stops
+     *
+     * @param warmPoolSize Maximum number of warm clones
+     * @return The current Builder instance
+     */
+    public Builder setWarmPoolSize(int warmPoolSize) {
+      this.warmPoolSize = warmPoolSize;
+      return this;
+    }
+
+    /**
+     * [Optional] Set how crons are run. Default: DISRUPTOR
+     *
+     * <p>With SHARDED, each clone is pinned to one of the threads, which steal from each other
+     * when they run out of clones. Scales better with many threads
+     *
+     * <p>With VIRTUAL_THREADS (JDK 21+), each clone runs on its own virtual thread instead of
+     * sharing a fixed pool of threads. Better suited for crons which block on I/O
+     *
+     * @param executionMode DISRUPTOR, SHARDED or VIRTUAL_THREADS
+     * @return The current Builder instance
+     */
+    public Builder setExecutionMode(ExecutionMode executionMode) {
+      this.executionMode = executionMode;
+      return this;
+    }
+
+    /**
+     * [Optional] Set how the scheduler's workers wait for clones to run (in DISRUPTOR mode).
+     * Default: BLOCKING
+     *
+     * <p>BLOCKING costs a lock and a wakeup per dispatch, but no CPU while idle. YIELDING and
+     * BUSY_SPIN cut dispatch latencies the most, but each worker burns a core even when idle: only
+     * use them on a dedicated box with more cores than threads. SLEEPING and PHASED_BACKOFF sit in
+     * between. See the WaitModeBenchmark example to compare them
+     *
+     * @param schedulerWaitMode The wait mode
+     * @return The current Builder instance
+     */
+    public Builder setSchedulerWaitMode(DisruptorBroker.WaitMode schedulerWaitMode) {
+      this.schedulerWaitMode = schedulerWaitMode;
+      return this;
+    }
+
+    /**
+     * [Optional] Set how the transport's sender waits for messages to the master. Default:
+     * BLOCKING
+     *
+     * @param transportWaitMode The wait mode
+     * @return The current Builder instance
+     */
+    public Builder setTransportWaitMode(DisruptorBroker.WaitMode transportWaitMode) {
+      this.transportWaitMode = transportWaitMode;
+      return this;
+    }
+
     /**
      * Set the interval to send statistics data to Locust Master
      *
@@ -529,6 +1064,18 @@ public class Locust implements Disposable, Initializable {
       return this;
     }
 
+    /**
+     * Set the size of the ring which requests are recorded into. Recording waits for a free slot
+     * once it's full
+     *
+     * @param statsBufferSize A positive number which is a power of 2
+     * @return The current Builder instance
+     */
+    public Builder setStatsBufferSize(int statsBufferSize) {
+      this.statsBufferSize = statsBufferSize;
+      return this;
+    }
+
     public Builder setRandomSeed(int randomSeed) {
       this.randomSeed = randomSeed;
       return this;
@@ -545,6 +1092,160 @@ public class Locust implements Disposable, Initializable {
       return this;
     }
 
+    /**
+     * [Optional] Issue requests at a constant arrival rate (open model) instead of running each
+     * clone again as soon as it completes (closed model). Latencies then include the time each
+     * request waited past its intended start, so a slow target can't hide behind a lower load
+     *
+     * <p>NOTE: The number of hatched clones still bounds the requests in flight
+     *
+     * @param arrivalRate Requests per second
+     * @return The current Builder instance
+     */
+    public Builder setArrivalRate(double arrivalRate) {
+      this.arrivalRate = arrivalRate;
+      return this;
+    }
+
+    /**
+     * [Optional] Set how requests arrive when an arrival rate is given. Default: FIXED
+     *
+     * @param arrivalProcess FIXED or POISSON
+     * @return The current Builder instance
+     */
+    public Builder setArrivalProcess(ArrivalProcess arrivalProcess) {
+      this.arrivalProcess = arrivalProcess;
+      return this;
+    }
+
+    /**
+     * [Optional] Drive the number of users along a shape once a test starts, instead of sticking
+     * to the number requested by the master
+     *
+     * @param userShape The shape. See LoadShape for built-in ones
+     * @return The current Builder instance
+     */
+    public Builder setUserShape(LoadShape userShape) {
+      this.userShape = userShape;
+      return this;
+    }
+
+    /**
+     * [Optional] Drive the target RPS along a shape once a test starts (see Locust.setTargetRps)
+     *
+     * @param rpsShape The shape. See LoadShape for built-in ones
+     * @return The current Builder instance
+     */
+    public Builder setRpsShape(LoadShape rpsShape) {
+      this.rpsShape = rpsShape;
+      return this;
+    }
+
+    /**
+     * [Optional] Set how often shapes are sampled. Default: 1000
+     *
+     * @param shapeInterval Interval (in ms)
+     * @return The current Builder instance
+     */
+    public Builder setShapeInterval(int shapeInterval) {
+      this.shapeInterval = shapeInterval;
+      return this;
+    }
+
+    /**
+     * [Optional] Keep adjusting the load so that a latency percentile (p99 by default) stays
+     * under the given target, in search of the highest sustainable throughput
+     *
+     * @param latencyTarget Latency (in ms)
+     * @param autoscaleTarget Whether to adjust the number of users or the target RPS
+     * @return The current Builder instance
+     */
+    public Builder setLatencyTarget(long latencyTarget, Autoscaler.Target autoscaleTarget) {
+      this.latencyTarget = latencyTarget;
+      this.autoscaleTarget = autoscaleTarget;
+      return this;
+    }
+
+    /**
+     * [Optional] Set the percentile held under the latency target. Default: 0.99
+     *
+     * @param latencyPercentile A number between 0 and 1
+     * @return The current Builder instance
+     */
+    public Builder setLatencyPercentile(double latencyPercentile) {
+      this.latencyPercentile = latencyPercentile;
+      return this;
+    }
+
+    /**
+     * [Optional] Set how often the load is adjusted to the latency target. It can't be shorter
+     * than the stat interval. Default: 10000
+     *
+     * @param autoscaleInterval Interval (in ms)
+     * @return The current Builder instance
+     */
+    public Builder setAutoscaleInterval(int autoscaleInterval) {
+      this.autoscaleInterval = autoscaleInterval;
+      return this;
+    }
+
+    /**
+     * [Optional] Set how crons' weights are applied. Default: PER_USER
+     *
+     * <p>With PER_USER, users are split among crons according to their weights, which may skew
+     * the mix with a few users. With PER_REQUEST, every user runs all the crons, picking one at
+     * random (according to their weights) for each request. NOTE: crons' own RPS limits and
+     * concurrency don't apply in this mode
+     *
+     * @param weightMode PER_USER or PER_REQUEST
+     * @return The current Builder instance
+     */
+    public Builder setWeightMode(WeightMode weightMode) {
+      this.weightMode = weightMode;
+      return this;
+    }
+
+    /**
+     * [Optional] Set the p99 dispatch lag (how late executions start compared to when they're
+     * ready) above which this generator is reported as saturated, in stats reports and
+     * heartbeats. A nearly full ring counts as saturated as well. Default: 10
+     *
+     * @param saturationThreshold Lag (in ms)
+     * @return The current Builder instance
+     */
+    public Builder setSaturationThreshold(long saturationThreshold) {
+      this.saturationThreshold = saturationThreshold;
+      return this;
+    }
+
+    /**
+     * [Optional] Hold the load back while this generator is overloaded, since its latencies
+     * would then measure its own CPU starvation and GC pauses. While any resource is over its
+     * limit, hatching is paused and the dispatch rate is capped below the measured throughput
+     *
+     * @param maxCpu Maximum process CPU load, between 0 and 1. Zero to ignore
+     * @param maxGc Maximum share of time spent in GC, between 0 and 1. Zero to ignore
+     * @param maxHeap Maximum heap occupancy, between 0 and 1. Zero to ignore
+     * @return The current Builder instance
+     */
+    public Builder setResourceLimits(double maxCpu, double maxGc, double maxHeap) {
+      this.maxCpu = maxCpu;
+      this.maxGc = maxGc;
+      this.maxHeap = maxHeap;
+      return this;
+    }
+
+    /**
+     * [Optional] Set how often resources are checked against their limits. Default: 1000
+     *
+     * @param governorInterval Interval (in ms)
+     * @return The current Builder instance
+     */
+    public Builder setGovernorInterval(int governorInterval) {
+      this.governorInterval = governorInterval;
+      return this;
+    }
+
     /**
      * [Optional] Set the internal buffer size. Default value is 32k which is may enough
      *
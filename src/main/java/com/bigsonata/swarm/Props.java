@@ -1,10 +1,20 @@
 package com.bigsonata.swarm;
 
+import com.bigsonata.swarm.common.stats.StatsHandle;
+
 public class Props {
   protected String type = "default";
   protected String name = "cron";
   protected int weight = 1;
   protected boolean async = false;
+  protected int concurrency = 1;
+  protected long timeout = 0;
+  protected long pacing = 0;
+  protected int maxRps = 0;
+  protected long minThinkTime = 0;
+  protected long maxThinkTime = 0;
+  /** Handle of (type, name) in the stats. Resolved on the first request */
+  StatsHandle statsHandle = null;
 
   private Props() {}
 
@@ -25,11 +35,13 @@ public class Props {
 
   public Props setType(String type) {
     this.type = type;
+    this.statsHandle = null;
     return this;
   }
 
   public Props setName(String name) {
     this.name = name;
+    this.statsHandle = null;
     return this;
   }
 
@@ -42,4 +54,75 @@ public class Props {
     this.async = async;
     return this;
   }
+
+  /**
+   * Set the maximum number of executions a single clone may have in flight
+   *
+   * @param concurrency A positive number. Default: 1
+   * @return The current Props instance
+   */
+  public Props setConcurrency(int concurrency) {
+    this.concurrency = concurrency;
+    return this;
+  }
+
+  /**
+   * Set the time an execution may take before it is reclaimed and recorded as a failure
+   *
+   * @param timeout Timeout (in ms). Zero or a negative number disables the timeout
+   * @return The current Props instance
+   */
+  public Props setTimeout(long timeout) {
+    this.timeout = timeout;
+    return this;
+  }
+
+  /**
+   * Set a constant think time between an execution's completion and the next one
+   *
+   * @param thinkTime Think time (in ms)
+   * @return The current Props instance
+   */
+  public Props setThinkTime(long thinkTime) {
+    return setThinkTime(thinkTime, thinkTime);
+  }
+
+  /**
+   * Set a random think time between an execution's completion and the next one
+   *
+   * @param min Minimum think time (in ms)
+   * @param max Maximum think time (in ms)
+   * @return The current Props instance
+   */
+  public Props setThinkTime(long min, long max) {
+    this.minThinkTime = min;
+    this.maxThinkTime = max;
+    return this;
+  }
+
+  /**
+   * Start executions at a constant pace, no matter how long each of them takes. An execution
+   * which takes longer than the pacing is followed immediately by the next one. Takes precedence
+   * over think time
+   *
+   * @param pacing Time between the starts of two consecutive executions (in ms)
+   * @return The current Props instance
+   */
+  public Props setPacing(long pacing) {
+    this.pacing = pacing;
+    return this;
+  }
+
+  /**
+   * Set the maximum requests per second shared by all the clones of this cron, on top of the
+   * global limit (if any). With an arrival rate, requests beyond it wait for a permit, and that
+   * wait counts in their latencies like any other wait past their intended start
+   *
+   * @param maxRps A positive number. Zero or a negative number means no limit
+   * @return The current Props instance
+   */
+  public Props setMaxRps(int maxRps) {
+    this.maxRps = maxRps;
+    return this;
+  }
 }
@@ -0,0 +1,9 @@
+package com.bigsonata.swarm;
+
+/** How crons' weights are applied */
+public enum WeightMode {
+  /** Users are split among crons according to their weights, when they're hatched */
+  PER_USER,
+  /** Every user runs all the crons, picking one according to their weights for each request */
+  PER_REQUEST
+}
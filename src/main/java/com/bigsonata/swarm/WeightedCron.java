@@ -0,0 +1,63 @@
+package com.bigsonata.swarm;
+
+import com.bigsonata.swarm.common.AliasTable;
+
+import java.util.List;
+
+/**
+ * A user which runs one of several crons per execution, picked at random according to their
+ * weights. It owns a clone of each of them.
+ */
+class WeightedCron extends Cron {
+  private final Cron[] crons;
+  private final AliasTable table;
+
+  WeightedCron(List<Cron> prototypes) {
+    super(Props.create().setName("weighted"));
+    this.crons = prototypes.toArray(new Cron[0]);
+    int[] weights = new int[crons.length];
+    for (int i = 0; i < crons.length; i++) {
+      weights[i] = crons[i].getWeight();
+    }
+    this.table = new AliasTable(weights);
+  }
+
+  private WeightedCron(Cron[] crons, AliasTable table) {
+    super(Props.create().setName("weighted"));
+    this.crons = crons;
+    this.table = table;
+  }
+
+  @Override
+  public Cron select() {
+    return crons[table.next()];
+  }
+
+  @Override
+  public void process() {
+    select().process();
+  }
+
+  @Override
+  public Cron clone() {
+    Cron[] clones = new Cron[crons.length];
+    for (int i = 0; i < crons.length; i++) {
+      clones[i] = crons[i].clone();
+    }
+    return new WeightedCron(clones, table);
+  }
+
+  @Override
+  public void dispose() {
+    for (Cron cron : crons) {
+      cron.dispose();
+    }
+  }
+
+  @Override
+  public void initialize() {
+    for (Cron cron : crons) {
+      cron.initialize();
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package com.bigsonata.swarm.common;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Walker's alias table: picks an index at random, with probabilities proportional to the given
+ * weights, in constant time and without any allocation. Tables are immutable, hence thread-safe.
+ */
+public class AliasTable {
+  private final double[] probabilities;
+  private final int[] aliases;
+
+  /**
+   * Build a table with Vose's method
+   *
+   * @param weights Non-negative weights. If they're all zero, every index is equally likely
+   */
+  public AliasTable(int[] weights) {
+    int size = weights.length;
+    if (size == 0) {
+      throw new IllegalArgumentException("Must provide at least one weight");
+    }
+    probabilities = new double[size];
+    aliases = new int[size];
+
+    double sum = 0;
+    for (int weight : weights) {
+      sum += Math.max(0, weight);
+    }
+    double[] scaled = new double[size];
+    Deque<Integer> small = new ArrayDeque<>(size);
+    Deque<Integer> large = new ArrayDeque<>(size);
+    for (int i = 0; i < size; i++) {
+      scaled[i] = sum == 0 ? 1 : Math.max(0, weights[i]) * size / sum;
+      if (scaled[i] < 1) {
+        small.push(i);
+      } else {
+        large.push(i);
+      }
+    }
+    while (!small.isEmpty() && !large.isEmpty()) {
+      int less = small.pop();
+      int more = large.pop();
+      probabilities[less] = scaled[less];
+      aliases[less] = more;
+      scaled[more] = scaled[more] + scaled[less] - 1;
+      if (scaled[more] < 1) {
+        small.push(more);
+      } else {
+        large.push(more);
+      }
+    }
+    // whatever is left is (up to rounding errors) exactly 1
+    while (!large.isEmpty()) {
+      probabilities[large.pop()] = 1;
+    }
+    while (!small.isEmpty()) {
+      probabilities[small.pop()] = 1;
+    }
+  }
+
+  public int size() {
+    return probabilities.length;
+  }
+
+  /**
+   * Pick an index
+   *
+   * @return An index between 0 and size() - 1
+   */
+  public int next() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int column = random.nextInt(probabilities.length);
+    return random.nextDouble() < probabilities[column] ? column : aliases[column];
+  }
+}
@@ -0,0 +1,102 @@
+package com.bigsonata.swarm.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free rate limiter. Instead of blocking, {@link #reserve()} tells the caller how long it
+ * should wait before using the permit it just got.
+ *
+ * <p>Permits are taken from a shared timeline in batches: a single CAS reserves a run of
+ * consecutive permits for the calling thread, which then hands them out locally. Permits are
+ * never stored while the limiter is idle, so there's no burst after a pause.
+ *
+ * <p>A thread only gets bigger batches as long as it uses them up right away: a batch it leaves
+ * behind is handed back to the timeline if nobody reserved after it, and the thread goes back to
+ * reserving permits one by one. So sparse callers don't waste the permits they'd never use.
+ */
+public class TokenBucket {
+  /** A batch should not span more than this (in ns) */
+  private static final long BATCH_WINDOW = 100000;
+
+  private static final int MAX_BATCH_SIZE = 64;
+  private final AtomicLong horizon = new AtomicLong(Long.MIN_VALUE);
+  private final ThreadLocal<Batch> batches = ThreadLocal.withInitial(Batch::new);
+  private volatile long interval;
+  private volatile int batchSize;
+
+  /** @param rate Permits per second */
+  public TokenBucket(double rate) {
+    setRate(rate);
+  }
+
+  /**
+   * Change the rate. Permits which are already reserved are not affected
+   *
+   * @param rate Permits per second
+   */
+  public void setRate(double rate) {
+    this.interval = Math.max(1, (long) (1e9 / rate));
+    this.batchSize = (int) Math.max(1, Math.min(MAX_BATCH_SIZE, BATCH_WINDOW / this.interval));
+  }
+
+  public double getRate() {
+    return 1e9 / interval;
+  }
+
+  /**
+   * Reserve a permit
+   *
+   * @return Time (in ns) the caller should wait before using the permit
+   */
+  public long reserve() {
+    Batch batch = batches.get();
+    long now = System.nanoTime();
+    if (batch.remaining == 0 || batch.interval != interval || batch.next < now - BATCH_WINDOW) {
+      refill(batch, now);
+    }
+    long at = batch.next;
+    batch.next += batch.interval;
+    batch.remaining--;
+    return Math.max(0, at - now);
+  }
+
+  private void refill(Batch batch, long now) {
+    long interval = this.interval;
+    int size;
+    if (batch.remaining == 0) {
+      size = batch.size;
+      if (now - batch.reservedAt <= 2 * BATCH_WINDOW) {
+        // it used up its batch right away, so it's a busy caller
+        size = Math.min(this.batchSize, size * 2);
+      }
+    } else {
+      // it's too slow to use the batch, or the rate changed
+      long end = batch.next + batch.interval * batch.remaining;
+      horizon.compareAndSet(end, batch.next);
+      size = 1;
+    }
+    batch.size = size;
+    while (true) {
+      long current = horizon.get();
+      long start = Math.max(current, now);
+      if (horizon.compareAndSet(current, start + interval * size)) {
+        batch.next = start;
+        batch.interval = interval;
+        batch.remaining = size;
+        batch.reservedAt = now;
+        return;
+      }
+    }
+  }
+
+  /** Permits reserved by a thread, but not handed out yet */
+  private static class Batch {
+    long next = 0;
+    long interval = 0;
+    int remaining = 0;
+    /** Number of permits this thread reserves at once */
+    int size = 1;
+    /** When the batch was reserved (in ns) */
+    long reservedAt = 0;
+  }
+}
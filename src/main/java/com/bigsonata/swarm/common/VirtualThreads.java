@@ -0,0 +1,22 @@
+package com.bigsonata.swarm.common;
+
+/**
+ * Virtual threads are only available on JDK 21+. This class is replaced by its JDK 21 version
+ * (see src/main/java21) in our multi-release jar.
+ */
+public class VirtualThreads {
+  public static boolean isSupported() {
+    return false;
+  }
+
+  /**
+   * Start a new virtual thread
+   *
+   * @param name The thread name
+   * @param runnable The task to run
+   * @return The started thread
+   */
+  public static Thread start(String name, Runnable runnable) {
+    throw new UnsupportedOperationException("Virtual threads require JDK 21+");
+  }
+}
@@ -14,8 +14,23 @@ public class Histogram {
   }
 
   void inc(Long k) {
+    add(k, 1);
+  }
+
+  void add(Long k, long count) {
     map.putIfAbsent(k, new AtomicInteger(0));
-    map.get(k).incrementAndGet();
+    map.get(k).addAndGet((int) count);
+  }
+
+  /**
+   * Add all the counts of another histogram
+   *
+   * @param other The other histogram
+   */
+  void addAll(Histogram other) {
+    for (Map.Entry<Long, AtomicInteger> entry : other.map.entrySet()) {
+      add(entry.getKey(), entry.getValue().get());
+    }
   }
 
   @Override
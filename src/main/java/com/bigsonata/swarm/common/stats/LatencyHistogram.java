@@ -0,0 +1,135 @@
+package com.bigsonata.swarm.common.stats;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A high dynamic range histogram of latencies (in us), precise to about 0.2% whatever their
+ * magnitude: values below 1024 us are counted exactly, then every power of 2 is split into 512
+ * buckets, each reported as its highest value. Unlike the buckets Locust reports, it tells a
+ * p99.99 at 1.234 ms from one at 1.299 ms.
+ *
+ * <p>Counts are kept in a long[] which grows with the largest value recorded. Not thread-safe:
+ * it's meant to be written by a single thread, see {@link LatencyRecorder}.
+ */
+public class LatencyHistogram {
+  /** Latencies above this one (in us) are counted as this one */
+  public static final long MAX_VALUE = TimeUnit.HOURS.toMicros(1);
+
+  private static final int SUB_BUCKET_BITS = 10;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int HALF = SUB_BUCKETS / 2;
+  private static final int MAX_BUCKETS = indexOf(MAX_VALUE) + 1;
+
+  private long[] counts = new long[SUB_BUCKETS];
+  private long count = 0;
+  private long total = 0;
+  private long max = 0;
+
+  private static int indexOf(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) Math.max(0, value);
+    }
+    // the top SUB_BUCKET_BITS bits of the value, the first of them being set
+    int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    return SUB_BUCKETS + (shift - 1) * HALF + (int) ((value >> shift) - HALF);
+  }
+
+  /** @return The largest value counted in a bucket */
+  private static long highestValueOf(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = (index - SUB_BUCKETS) / HALF + 1;
+    long subBucket = (index - SUB_BUCKETS) % HALF + HALF;
+    return ((subBucket + 1) << shift) - 1;
+  }
+
+  /**
+   * Record a latency
+   *
+   * @param value Latency (in us)
+   */
+  public void record(long value) {
+    value = Math.min(Math.max(0, value), MAX_VALUE);
+    int index = indexOf(value);
+    if (index >= counts.length) {
+      counts = Arrays.copyOf(counts, Math.min(MAX_BUCKETS, Math.max(index + 1, counts.length * 2)));
+    }
+    counts[index]++;
+    count++;
+    total += value;
+    if (value > max) {
+      max = value;
+    }
+  }
+
+  /**
+   * Add all the latencies of another histogram
+   *
+   * @param other The other histogram
+   */
+  public void add(LatencyHistogram other) {
+    if (other.counts.length > counts.length) {
+      counts = Arrays.copyOf(counts, other.counts.length);
+    }
+    for (int index = 0; index < other.counts.length; index++) {
+      counts[index] += other.counts[index];
+    }
+    count += other.count;
+    total += other.total;
+    max = Math.max(max, other.max);
+  }
+
+  /** Forget all the recorded latencies */
+  public void reset() {
+    Arrays.fill(counts, 0);
+    count = 0;
+    total = 0;
+    max = 0;
+  }
+
+  /**
+   * Get a copy of this histogram
+   *
+   * @return The copy
+   */
+  public LatencyHistogram copy() {
+    LatencyHistogram copy = new LatencyHistogram();
+    copy.add(this);
+    return copy;
+  }
+
+  /**
+   * Get a percentile of the recorded latencies
+   *
+   * @param percentile A number between 0 and 1, e.g. 0.9999 for the p99.99
+   * @return The latency (in us), never below the exact one and at most 0.2% above it. Or 0 if
+   *     nothing is recorded
+   */
+  public long percentile(double percentile) {
+    long rank = Math.max(1, (long) Math.ceil(percentile * count));
+    long seen = 0;
+    for (int index = 0; index < counts.length; index++) {
+      seen += counts[index];
+      if (seen >= rank) {
+        return Math.min(highestValueOf(index), max);
+      }
+    }
+    return 0;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  /** @return The largest latency (in us) */
+  public long getMax() {
+    return max;
+  }
+
+  /** @return The average latency (in us) */
+  public double getMean() {
+    return count == 0 ? 0 : (double) total / count;
+  }
+}
@@ -0,0 +1,59 @@
+package com.bigsonata.swarm.common.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records latencies into one of two histograms, and lets a reader swap them to take the latencies
+ * recorded since its previous swap. Recording never waits for the reader: a swap waits for
+ * recordings in flight on the histogram it takes instead (a writer-reader phaser, as in
+ * HdrHistogram's Recorder).
+ *
+ * <p>The phaser only keeps the writer apart from the reader: there must be a single writing
+ * thread, e.g. the thread owning a stats shard, since the histograms aren't thread-safe.
+ */
+public class LatencyRecorder {
+  private final AtomicLong startEpoch = new AtomicLong(0);
+  private final AtomicLong evenEndEpoch = new AtomicLong(0);
+  private final AtomicLong oddEndEpoch = new AtomicLong(Long.MIN_VALUE);
+  private volatile LatencyHistogram active = new LatencyHistogram();
+  // owned by the reader
+  private LatencyHistogram inactive = new LatencyHistogram();
+
+  /**
+   * Record a latency. Must be called by a single (writing) thread
+   *
+   * @param value Latency (in us)
+   */
+  public void record(long value) {
+    long epoch = startEpoch.getAndIncrement();
+    try {
+      active.record(value);
+    } finally {
+      (epoch < 0 ? oddEndEpoch : evenEndEpoch).getAndIncrement();
+    }
+  }
+
+  /**
+   * Take the latencies recorded since the previous swap. Must be called by a single (reading)
+   * thread
+   *
+   * @return The latencies. Only valid until the next swap
+   */
+  public LatencyHistogram swap() {
+    inactive.reset();
+    LatencyHistogram taken = active;
+    active = inactive;
+    inactive = taken;
+
+    // flip the phase, then wait for the writers which may still be recording into what we took
+    boolean nextPhaseIsEven = startEpoch.get() < 0;
+    long initialStartValue = nextPhaseIsEven ? 0 : Long.MIN_VALUE;
+    (nextPhaseIsEven ? evenEndEpoch : oddEndEpoch).set(initialStartValue);
+    long startValueAtFlip = startEpoch.getAndSet(initialStartValue);
+    AtomicLong endEpoch = nextPhaseIsEven ? oddEndEpoch : evenEndEpoch;
+    while (endEpoch.get() != startValueAtFlip) {
+      Thread.yield();
+    }
+    return taken;
+  }
+}
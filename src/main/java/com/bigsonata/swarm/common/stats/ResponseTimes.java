@@ -0,0 +1,223 @@
+package com.bigsonata.swarm.common.stats;
+
+import java.util.Arrays;
+
+/**
+ * A histogram of response times, counted in the buckets Locust rounds them into: to the ms below
+ * 100 ms, to 10 ms below 1 s, to 100 ms below 10 s, and to the second above. Rounding is Python's:
+ * halves go to the even neighbour.
+ *
+ * <p>Counts are kept in a long[] indexed by bucket, and the bucket of a response time below 10 s
+ * is looked up in a table. So recording one is a lookup and an increment, and allocates nothing
+ * unless the histogram has to grow for a slower response.
+ *
+ * <p>Not thread-safe: it's meant to be written by a single thread.
+ */
+public class ResponseTimes {
+  /** Response times above this one (in ms) are counted as this one */
+  public static final long MAX_RESPONSE_TIME = 3600000;
+
+  private static final int TENS = 100;
+  private static final int HUNDREDS = TENS + 90;
+  private static final int THOUSANDS = HUNDREDS + 90;
+  /** Response times below this one (in ms) have their bucket looked up */
+  private static final int TABLE_SIZE = 10000;
+  private static final short[] TABLE = new short[TABLE_SIZE];
+  private static final int MAX_BUCKETS = bucketOfRounded(MAX_RESPONSE_TIME) + 1;
+
+  static {
+    for (int responseTime = 0; responseTime < TABLE_SIZE; responseTime++) {
+      TABLE[responseTime] = (short) bucketOfRounded(round(responseTime));
+    }
+  }
+
+  private long[] counts = new long[THOUSANDS];
+  private long count = 0;
+
+  /**
+   * Round a response time the way Locust does
+   *
+   * @param responseTime Response time (in ms)
+   * @return The rounded response time
+   */
+  public static long round(long responseTime) {
+    if (responseTime < 100) {
+      return Math.max(0, responseTime);
+    } else if (responseTime < 1000) {
+      return round(responseTime, 10);
+    } else if (responseTime < 10000) {
+      return round(responseTime, 100);
+    }
+    return round(responseTime, 1000);
+  }
+
+  /** Round half to even, as Python's round(value, -n) */
+  private static long round(long value, long step) {
+    long quotient = value / step;
+    long remainder = value % step;
+    if (remainder * 2 > step || (remainder * 2 == step && (quotient & 1) == 1)) {
+      quotient++;
+    }
+    return quotient * step;
+  }
+
+  private static int bucketOfRounded(long rounded) {
+    if (rounded < 100) {
+      return (int) rounded;
+    } else if (rounded < 1000) {
+      return TENS + (int) (rounded - 100) / 10;
+    } else if (rounded < 10000) {
+      return HUNDREDS + (int) (rounded - 1000) / 100;
+    }
+    return THOUSANDS + (int) ((rounded - 10000) / 1000);
+  }
+
+  /**
+   * Get the bucket of a response time
+   *
+   * @param responseTime Response time (in ms)
+   * @return The bucket
+   */
+  public static int bucketOf(long responseTime) {
+    if (responseTime < TABLE_SIZE) {
+      return TABLE[(int) Math.max(0, responseTime)];
+    }
+    return bucketOfRounded(round(Math.min(responseTime, MAX_RESPONSE_TIME)));
+  }
+
+  /**
+   * Get the (rounded) response time of a bucket
+   *
+   * @param bucket The bucket
+   * @return The response time (in ms)
+   */
+  public static long valueOf(int bucket) {
+    if (bucket < TENS) {
+      return bucket;
+    } else if (bucket < HUNDREDS) {
+      return 100 + (bucket - TENS) * 10L;
+    } else if (bucket < THOUSANDS) {
+      return 1000 + (bucket - HUNDREDS) * 100L;
+    }
+    return 10000 + (bucket - THOUSANDS) * 1000L;
+  }
+
+  /**
+   * Record a response time
+   *
+   * @param responseTime Response time (in ms)
+   */
+  public void record(long responseTime) {
+    add(bucketOf(responseTime), 1);
+  }
+
+  /**
+   * Add to the count of a bucket
+   *
+   * @param bucket The bucket
+   * @param count Number of response times
+   */
+  public void add(int bucket, long count) {
+    if (bucket >= counts.length) {
+      int size = Math.min(MAX_BUCKETS, Math.max(bucket + 1, counts.length * 2));
+      counts = Arrays.copyOf(counts, size);
+    }
+    counts[bucket] += count;
+    this.count += count;
+  }
+
+  /**
+   * Add all the counts of another histogram
+   *
+   * @param other The other histogram
+   */
+  public void addAll(ResponseTimes other) {
+    long[] counts = other.counts;
+    for (int bucket = 0; bucket < counts.length; bucket++) {
+      if (counts[bucket] > 0) {
+        add(bucket, counts[bucket]);
+      }
+    }
+  }
+
+  /**
+   * Get the number of buckets to go through, i.e. above which all buckets are empty
+   *
+   * @return Number of buckets
+   */
+  public int size() {
+    return counts.length;
+  }
+
+  /**
+   * Get the count of a bucket
+   *
+   * @param bucket The bucket
+   * @return The count
+   */
+  public long count(int bucket) {
+    long[] counts = this.counts;
+    return bucket < counts.length ? counts[bucket] : 0;
+  }
+
+  /**
+   * Get the number of buckets which aren't empty
+   *
+   * @return Number of buckets
+   */
+  public int countBuckets() {
+    int buckets = 0;
+    for (long count : counts) {
+      if (count > 0) {
+        buckets++;
+      }
+    }
+    return buckets;
+  }
+
+  /**
+   * Get the number of recorded response times
+   *
+   * @return The count
+   */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * Get a percentile of the recorded response times
+   *
+   * @param percentile A number between 0 and 1
+   * @return The (rounded) response time. Or 0 if nothing is recorded
+   */
+  public long percentile(double percentile) {
+    long[] counts = this.counts;
+    long total = 0;
+    for (long count : counts) {
+      total += count;
+    }
+    long rank = (long) Math.ceil(percentile * total);
+    long seen = 0;
+    for (int bucket = 0; bucket < counts.length; bucket++) {
+      seen += counts[bucket];
+      if (seen >= rank && seen > 0) {
+        return valueOf(bucket);
+      }
+    }
+    return 0;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder("{");
+    for (int bucket = 0; bucket < counts.length; bucket++) {
+      if (counts[bucket] > 0) {
+        if (builder.length() > 1) {
+          builder.append(", ");
+        }
+        builder.append(valueOf(bucket)).append('=').append(counts[bucket]);
+      }
+    }
+    return builder.append('}').toString();
+  }
+}
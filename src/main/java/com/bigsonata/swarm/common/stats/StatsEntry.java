@@ -18,10 +18,14 @@ public class StatsEntry {
   public AtomicLong maxResponseTime;
   public Histogram numReqsPerSec;
   public Histogram numFailPerSec;
-  public Histogram responseTimes;
+  public ResponseTimes responseTimes;
   public AtomicLong totalResponseLength;
   public AtomicLong startTime;
   public AtomicLong lastRequestTimestamp;
+  /** Latencies (in us) of the current interval */
+  public LatencyHistogram latencies;
+  /** Latencies (in us) since this entry was created. Not reset */
+  public LatencyHistogram cumulativeLatencies = new LatencyHistogram();
 
   public StatsEntry(String name) {
     this.name = name;
@@ -37,13 +41,14 @@ public class StatsEntry {
     this.numRequests = new AtomicLong(0);
     this.numFailures = new AtomicLong(0);
     this.totalResponseTime = new AtomicLong(0);
-    this.responseTimes = new Histogram();
+    this.responseTimes = new ResponseTimes();
     this.minResponseTime = new AtomicLong(0);
     this.maxResponseTime = new AtomicLong(0);
     this.lastRequestTimestamp = new AtomicLong(Utils.currentTimeInSeconds());
     this.numReqsPerSec = new Histogram();
     this.numFailPerSec = new Histogram();
     this.totalResponseLength = new AtomicLong(0);
+    this.latencies = new LatencyHistogram();
   }
 
   public void log(long responseTime, long responseLength) {
@@ -74,19 +79,59 @@ public class StatsEntry {
       this.maxResponseTime.set(responseTime);
     }
 
-    long roundedResponseTime = 0L;
+    this.responseTimes.record(responseTime);
+    this.latencies.record(responseTime * 1000);
+    this.cumulativeLatencies.record(responseTime * 1000);
+  }
+
+  /**
+   * Add some latencies recorded elsewhere
+   *
+   * @param latencies Latencies (in us)
+   */
+  public void addLatencies(LatencyHistogram latencies) {
+    this.latencies.add(latencies);
+    this.cumulativeLatencies.add(latencies);
+  }
 
-    if (responseTime < 100) {
-      roundedResponseTime = responseTime;
-    } else if (responseTime < 1000) {
-      roundedResponseTime = Utils.round(responseTime, -1);
-    } else if (responseTime < 10000) {
-      roundedResponseTime = Utils.round(responseTime, -2);
-    } else {
-      roundedResponseTime = Utils.round(responseTime, -3);
+  /**
+   * Merge the extremes of some requests recorded elsewhere. Their counters are added separately
+   *
+   * @param minResponseTime Their minimum response time. Zero if unknown
+   * @param maxResponseTime Their maximum response time
+   * @param lastRequestTimestamp Timestamp of the last one (in seconds)
+   */
+  void merge(long minResponseTime, long maxResponseTime, long lastRequestTimestamp) {
+    long min = this.minResponseTime.get();
+    if (minResponseTime > 0 && (min == 0 || minResponseTime < min)) {
+      this.minResponseTime.set(minResponseTime);
     }
+    if (maxResponseTime > this.maxResponseTime.get()) {
+      this.maxResponseTime.set(maxResponseTime);
+    }
+    if (lastRequestTimestamp > this.lastRequestTimestamp.get()) {
+      this.lastRequestTimestamp.set(lastRequestTimestamp);
+    }
+  }
 
-    this.responseTimes.inc(roundedResponseTime);
+  /**
+   * Add everything another entry recorded, e.g. to sum up entries into a total
+   *
+   * @param other The other entry
+   */
+  public void add(StatsEntry other) {
+    this.numRequests.addAndGet(other.numRequests.get());
+    this.numFailures.addAndGet(other.numFailures.get());
+    this.totalResponseTime.addAndGet(other.totalResponseTime.get());
+    this.totalResponseLength.addAndGet(other.totalResponseLength.get());
+    merge(
+        other.minResponseTime.get(),
+        other.maxResponseTime.get(),
+        other.lastRequestTimestamp.get());
+    this.responseTimes.addAll(other.responseTimes);
+    this.numReqsPerSec.addAll(other.numReqsPerSec);
+    this.numFailPerSec.addAll(other.numFailPerSec);
+    addLatencies(other.latencies);
   }
 
   public void logError(String error) {
@@ -1,5 +1,7 @@
 package com.bigsonata.swarm.common.stats;
 
+import com.bigsonata.swarm.common.Utils;
+
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
@@ -18,6 +20,24 @@ public class StatsError {
     this.error = error;
   }
 
+  /**
+   * Get the key of an error among all the errors
+   *
+   * @param method Method
+   * @param name Name
+   * @param error Error
+   * @return The key
+   */
+  public static String keyOf(String method, String name, String error) {
+    // length-prefixed, or ("a", "b.c") would be the same as ("a.b", "c"). Not keyed by handle, so
+    // that all the generators agree on the key of an error
+    method = String.valueOf(method);
+    name = String.valueOf(name);
+    String input = method.length() + ":" + method + name.length() + ":" + name + error;
+    String key = Utils.md5(input);
+    return key == null ? input : key;
+  }
+
   public void occured() {
     this.occurences.incrementAndGet();
   }
@@ -0,0 +1,42 @@
+package com.bigsonata.swarm.common.stats;
+
+/**
+ * Stands for the stats of a (method, name) pair. Resolved once, e.g. when a cron records its first
+ * request, then used to record requests without building or hashing any key.
+ *
+ * <p>Handles are interned by the stats service: there is a single handle per pair, which can be
+ * compared by identity.
+ */
+public final class StatsHandle {
+  private final int id;
+  private final String method;
+  private final String name;
+
+  /**
+   * @param id Index of the pair's slot, unique among the handles of a stats service
+   * @param method Method
+   * @param name Name
+   */
+  public StatsHandle(int id, String method, String name) {
+    this.id = id;
+    this.method = method;
+    this.name = name;
+  }
+
+  public int getId() {
+    return id;
+  }
+
+  public String getMethod() {
+    return method;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public String toString() {
+    return method + " " + name;
+  }
+}
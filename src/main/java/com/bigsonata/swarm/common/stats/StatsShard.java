@@ -0,0 +1,262 @@
+package com.bigsonata.swarm.common.stats;
+
+import com.bigsonata.swarm.common.Utils;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Stats recorded by a single thread. Its counters are cumulative and only ever written by their
+ * owner, which publishes them with ordered writes ({@link AtomicLong#lazySet(long)}) instead of
+ * atomic read-modify-writes. Nothing is shared between recording threads, so recording costs the
+ * same no matter how many threads record.
+ *
+ * <p>The reporting thread drains a shard by diffing its counters against what it has seen on its
+ * previous visit, and adds the difference to the entries it reports.
+ */
+public class StatsShard {
+  /**
+   * Number of seconds which per-second counters are kept for. A second has to be drained before
+   * its counter is reused, i.e. within a minute
+   */
+  private static final int SECONDS = 64;
+  private final int generation;
+  private final Map<StatsHandle, Entry> entries = new ConcurrentHashMap<>();
+  /** The same entries, by handle id. Owned by the writer */
+  private Entry[] byId = new Entry[64];
+
+  /** @param generation Generation of stats this shard belongs to, see Stats.clearAll */
+  public StatsShard(int generation) {
+    this.generation = generation;
+  }
+
+  public int getGeneration() {
+    return generation;
+  }
+
+  private static void add(AtomicLong counter, long delta) {
+    // single writer: no need for an atomic increment
+    counter.lazySet(counter.get() + delta);
+  }
+
+  private Entry get(StatsHandle handle) {
+    int id = handle.getId();
+    if (id >= byId.length) {
+      byId = Arrays.copyOf(byId, Math.max(id + 1, byId.length * 2));
+    }
+    Entry entry = byId[id];
+    if (entry == null) {
+      entry = new Entry(handle);
+      entries.put(handle, entry);
+      byId[id] = entry;
+    }
+    return entry;
+  }
+
+  /**
+   * Record a successful request. Must be called by the owner thread only
+   *
+   * @param handle Handle of the entry
+   * @param latency Response time (in us)
+   * @param responseLength Content size
+   */
+  public void log(StatsHandle handle, long latency, long responseLength) {
+    Entry entry = get(handle);
+    long now = Utils.currentTimeInSeconds();
+    long responseTime = (latency + 500) / 1000;
+    entry.latencies.record(latency);
+    add(entry.totalResponseTime, responseTime);
+    add(entry.totalResponseLength, responseLength);
+    if (entry.minResponseTime.get() == 0 || responseTime < entry.minResponseTime.get()) {
+      entry.minResponseTime.lazySet(responseTime);
+    }
+    if (responseTime > entry.maxResponseTime.get()) {
+      entry.maxResponseTime.lazySet(responseTime);
+    }
+    entry.lastRequestTimestamp.lazySet(now);
+    entry.responseTimes.record(responseTime);
+    entry.numReqsPerSec.inc(now);
+    // last, so that whoever sees the new count sees all the rest
+    add(entry.numRequests, 1);
+  }
+
+  /**
+   * Record a failed request. Must be called by the owner thread only
+   *
+   * @param handle Handle of the entry
+   * @param error Error
+   */
+  public void logError(StatsHandle handle, String error) {
+    Entry entry = get(handle);
+    Error entryError = entry.errors.get(error);
+    if (entryError == null) {
+      entryError = new Error(handle, error);
+      entry.errors.put(error, entryError);
+    }
+    add(entryError.occurences, 1);
+    entry.numFailPerSec.inc(Utils.currentTimeInSeconds());
+    add(entry.numFailures, 1);
+  }
+
+  /**
+   * Add what was recorded since the previous call to the given entries and errors. Must be called
+   * by a single (reporting) thread
+   *
+   * @param into Entries, by handle
+   * @param errorsInto Errors, by key
+   */
+  public void drainInto(Map<StatsHandle, StatsEntry> into, Map<String, StatsError> errorsInto) {
+    for (Entry entry : entries.values()) {
+      long requests = entry.numRequests.get();
+      long failures = entry.numFailures.get();
+      if (requests == entry.seenRequests && failures == entry.seenFailures) {
+        continue;
+      }
+      StatsEntry target = into.get(entry.handle);
+      if (target == null) {
+        target = new StatsEntry(entry.handle.getName(), entry.handle.getMethod());
+        target.reset();
+        into.put(entry.handle, target);
+      }
+      target.numRequests.addAndGet(requests - entry.seenRequests);
+      target.numFailures.addAndGet(failures - entry.seenFailures);
+      entry.seenRequests = requests;
+      entry.seenFailures = failures;
+
+      long totalResponseTime = entry.totalResponseTime.get();
+      target.totalResponseTime.addAndGet(totalResponseTime - entry.seenResponseTime);
+      entry.seenResponseTime = totalResponseTime;
+      long totalResponseLength = entry.totalResponseLength.get();
+      target.totalResponseLength.addAndGet(totalResponseLength - entry.seenResponseLength);
+      entry.seenResponseLength = totalResponseLength;
+
+      target.merge(
+          entry.minResponseTime.get(),
+          entry.maxResponseTime.get(),
+          entry.lastRequestTimestamp.get());
+      entry.drainResponseTimes(target.responseTimes);
+      target.addLatencies(entry.latencies.swap());
+      entry.numReqsPerSec.drainInto(target.numReqsPerSec);
+      entry.numFailPerSec.drainInto(target.numFailPerSec);
+      for (Error error : entry.errors.values()) {
+        error.drainInto(errorsInto);
+      }
+    }
+  }
+
+  private static class Entry {
+    final StatsHandle handle;
+    final AtomicLong numRequests = new AtomicLong(0);
+    final AtomicLong numFailures = new AtomicLong(0);
+    final AtomicLong totalResponseTime = new AtomicLong(0);
+    final AtomicLong totalResponseLength = new AtomicLong(0);
+    final AtomicLong minResponseTime = new AtomicLong(0);
+    final AtomicLong maxResponseTime = new AtomicLong(0);
+    final AtomicLong lastRequestTimestamp = new AtomicLong(0);
+    // plain counts, published along with numRequests
+    final ResponseTimes responseTimes = new ResponseTimes();
+    final LatencyRecorder latencies = new LatencyRecorder();
+    final PerSecond numReqsPerSec = new PerSecond();
+    final PerSecond numFailPerSec = new PerSecond();
+    // owned by the reporting thread
+    long seenRequests = 0;
+    long seenFailures = 0;
+    long seenResponseTime = 0;
+    long seenResponseLength = 0;
+    long[] seenResponseTimes = new long[0];
+
+    /** Errors, by message. Counted before the failures */
+    final Map<String, Error> errors = new ConcurrentHashMap<>();
+
+    Entry(StatsHandle handle) {
+      this.handle = handle;
+    }
+
+    void drainResponseTimes(ResponseTimes into) {
+      int size = responseTimes.size();
+      if (seenResponseTimes.length < size) {
+        seenResponseTimes = Arrays.copyOf(seenResponseTimes, size);
+      }
+      for (int bucket = 0; bucket < size; bucket++) {
+        long count = responseTimes.count(bucket);
+        long delta = count - seenResponseTimes[bucket];
+        if (delta > 0) {
+          into.add(bucket, delta);
+          seenResponseTimes[bucket] = count;
+        }
+      }
+    }
+  }
+
+  /** Counters of the last seconds, in a ring of slots indexed by second */
+  private static class PerSecond {
+    final AtomicLongArray seconds = new AtomicLongArray(SECONDS);
+    final AtomicLongArray counts = new AtomicLongArray(SECONDS);
+    // owned by the reporting thread
+    final long[] seenSeconds = new long[SECONDS];
+    final long[] seen = new long[SECONDS];
+
+    void inc(long now) {
+      int slot = (int) (now & (SECONDS - 1));
+      if (seconds.get(slot) != now) {
+        // cleared before it's claimed, see drainInto
+        counts.lazySet(slot, 0);
+        seconds.lazySet(slot, now);
+      }
+      counts.lazySet(slot, counts.get(slot) + 1);
+    }
+
+    void drainInto(Histogram into) {
+      for (int slot = 0; slot < SECONDS; slot++) {
+        long second = seconds.get(slot);
+        long count = counts.get(slot);
+        if (second == 0 || second != seconds.get(slot)) {
+          // unused, or being reused right now
+          continue;
+        }
+        if (seenSeconds[slot] != second) {
+          seenSeconds[slot] = second;
+          seen[slot] = 0;
+        }
+        if (count > seen[slot]) {
+          into.add(second, count - seen[slot]);
+          seen[slot] = count;
+        }
+      }
+    }
+  }
+
+  private static class Error {
+    final StatsHandle handle;
+    final String error;
+    final AtomicLong occurences = new AtomicLong(0);
+    // owned by the reporting thread
+    String key = null;
+    long seen = 0;
+
+    Error(StatsHandle handle, String error) {
+      this.handle = handle;
+      this.error = error;
+    }
+
+    void drainInto(Map<String, StatsError> into) {
+      long occurences = this.occurences.get();
+      if (occurences == seen) {
+        return;
+      }
+      if (key == null) {
+        key = StatsError.keyOf(handle.getMethod(), handle.getName(), error);
+      }
+      StatsError target = into.get(key);
+      if (target == null) {
+        target = new StatsError(handle.getName(), handle.getMethod(), error);
+        into.put(key, target);
+      }
+      target.occurences.addAndGet(occurences - seen);
+      seen = occurences;
+    }
+  }
+}
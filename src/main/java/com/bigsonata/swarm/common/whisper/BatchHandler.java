@@ -0,0 +1,18 @@
+package com.bigsonata.swarm.common.whisper;
+
+/**
+ * Consumes messages one by one on a single thread, knowing where each batch of messages published
+ * together ends. Useful to buffer work and flush it once per batch
+ */
+public interface BatchHandler<T> {
+
+  /**
+   * Consume a message
+   *
+   * @param topic Topic to consume from
+   * @param message Message
+   * @param endOfBatch Whether no other message is pending at the moment
+   * @throws Exception Exception
+   */
+  void consume(String topic, T message, boolean endOfBatch) throws Exception;
+}
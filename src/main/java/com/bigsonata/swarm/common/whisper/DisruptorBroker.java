@@ -6,6 +6,7 @@ import com.lmax.disruptor.dsl.ProducerType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
 import java.util.Properties;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
@@ -60,6 +61,85 @@ public class DisruptorBroker<T> extends Broker<T> {
     }
   }
 
+  @Override
+  public boolean tryProduce(String topic, T message) throws Exception {
+    if (ringBuffer == null) {
+      throw new Exception("Must initialize Disruptor first");
+    }
+    long sequence;
+    try {
+      sequence = ringBuffer.tryNext();
+    } catch (InsufficientCapacityException e) {
+      return false;
+    }
+    try {
+      ringBuffer.get(sequence).setMessage(message).setTopic(topic);
+    } finally {
+      ringBuffer.publish(sequence);
+    }
+    return true;
+  }
+
+  /**
+   * Claim a range of sequences per batch (at most a full ring), and publish it at once: consumers
+   * are signalled once per range rather than once per message
+   */
+  @Override
+  public void produceBatch(String topic, List<? extends T> messages) throws Exception {
+    if (ringBuffer == null) {
+      throw new Exception("Must initialize Disruptor first");
+    }
+    int offset = 0;
+    while (offset < messages.size()) {
+      int n = Math.min(messages.size() - offset, builder.bufferSize);
+      long hi = ringBuffer.next(n);
+      long lo = hi - (n - 1);
+      try {
+        for (long sequence = lo; sequence <= hi; sequence++) {
+          ringBuffer.get(sequence).setMessage(messages.get(offset++)).setTopic(topic);
+        }
+      } finally {
+        ringBuffer.publish(lo, hi);
+      }
+    }
+  }
+
+  @Override
+  public int tryProduceBatch(String topic, List<? extends T> messages) throws Exception {
+    if (ringBuffer == null) {
+      throw new Exception("Must initialize Disruptor first");
+    }
+    int n = (int) Math.min(messages.size(), ringBuffer.remainingCapacity());
+    if (n <= 0) {
+      return 0;
+    }
+    long hi;
+    try {
+      hi = ringBuffer.tryNext(n);
+    } catch (InsufficientCapacityException e) {
+      // taken by other producers in the meantime
+      return 0;
+    }
+    long lo = hi - (n - 1);
+    try {
+      for (int i = 0; i < n; i++) {
+        ringBuffer.get(lo + i).setMessage(messages.get(i)).setTopic(topic);
+      }
+    } finally {
+      ringBuffer.publish(lo, hi);
+    }
+    return n;
+  }
+
+  /**
+   * Get the number of messages published but not processed yet
+   *
+   * @return Number of messages
+   */
+  public long getOccupancy() {
+    return ringBuffer == null ? 0 : ringBuffer.getBufferSize() - ringBuffer.remainingCapacity();
+  }
+
   @Override
   public void produceAsync(String topic, T message, Consumer<Result> callback) throws Exception {
     produce(topic, message);
@@ -71,11 +151,10 @@ public class DisruptorBroker<T> extends Broker<T> {
   public void initialize() throws Exception {
     logger.info("Initializing...");
     logger.info("> parallelism={}", builder.parallelism);
-    logger.info("> lowLatency={}", builder.lowLatency);
+    logger.info("> waitMode={}", builder.waitMode);
     logger.info("> bufferSize={}", builder.bufferSize);
 
-    WaitStrategy waitStrategy =
-        builder.isLowLatency() ? new BusySpinWaitStrategy() : new BlockingWaitStrategy();
+    WaitStrategy waitStrategy = getWaitStrategy(builder.waitMode);
     ProducerType producerType =
         builder.getProducerMode() == ProducerMode.SINGLE ? ProducerType.SINGLE : ProducerType.MULTI;
     EventFactory eventFactory = () -> new Event();
@@ -85,13 +164,33 @@ public class DisruptorBroker<T> extends Broker<T> {
             eventFactory, builder.bufferSize, getThreadFactory(), producerType, waitStrategy);
     initializeRingBuffer();
 
-    disruptor.handleEventsWithWorkerPool(getWorkersPool());
+    if (builder.batchHandler != null) {
+      disruptor.handleEventsWith(new DisruptorBatchHandler());
+    } else {
+      disruptor.handleEventsWithWorkerPool(getWorkersPool());
+    }
     // Start the Disruptor, starts all threads running
     disruptor.start();
 
     logger.info("Initialized");
   }
 
+  private static WaitStrategy getWaitStrategy(WaitMode waitMode) {
+    switch (waitMode) {
+      case SLEEPING:
+        return new SleepingWaitStrategy();
+      case YIELDING:
+        return new YieldingWaitStrategy();
+      case PHASED_BACKOFF:
+        // spin for 1us, then yield for up to 1ms before blocking
+        return PhasedBackoffWaitStrategy.withLock(1, 1000, TimeUnit.MICROSECONDS);
+      case BUSY_SPIN:
+        return new BusySpinWaitStrategy();
+      default:
+        return new BlockingWaitStrategy();
+    }
+  }
+
   private void initializeRingBuffer() {
     // Get the ring buffer from the Disruptor to be used for publishing.
     ringBuffer = disruptor.getRingBuffer();
@@ -126,6 +225,19 @@ public class DisruptorBroker<T> extends Broker<T> {
     MULTIPLE
   }
 
+  /**
+   * How consumers wait for messages. From the cheapest on CPU to the lowest latency: BLOCKING
+   * (a lock and a condition), SLEEPING, PHASED_BACKOFF (spins, yields, then blocks), YIELDING and
+   * BUSY_SPIN. The last two burn a core per consumer, even when idle
+   */
+  public enum WaitMode {
+    BLOCKING,
+    SLEEPING,
+    PHASED_BACKOFF,
+    YIELDING,
+    BUSY_SPIN
+  }
+
   private static class DisruptorEventHandler<T> implements WorkHandler<Event<T>> {
 
     @Override
@@ -141,12 +253,27 @@ public class DisruptorBroker<T> extends Broker<T> {
     }
   }
 
+  private class DisruptorBatchHandler implements EventHandler<Event<T>> {
+
+    @Override
+    public void onEvent(Event<T> event, long sequence, boolean endOfBatch) {
+      try {
+        builder.batchHandler.consume(event.getTopic(), event.getMessage(), endOfBatch);
+      } catch (Exception e) {
+        // an exception would halt the processor for good
+        e.printStackTrace();
+        logger.error("Error when consuming a batch. Detail: {}", e.getMessage());
+      }
+    }
+  }
+
   public static class Builder<T> implements BrokerBuilder<T> {
-    private boolean lowLatency = false;
+    private WaitMode waitMode = WaitMode.BLOCKING;
     private int bufferSize = 1024;
     private int parallelism = 1;
     private ProducerMode producerMode = ProducerMode.SINGLE;
     private MessageHandler<T> messageHandler = null;
+    private BatchHandler<T> batchHandler = null;
 
     public static Builder newInstance() {
       return new Builder();
@@ -179,8 +306,20 @@ public class DisruptorBroker<T> extends Broker<T> {
       return this;
     }
 
+    /**
+     * Consume messages on a single thread, batch by batch, instead of sharing them among a pool of
+     * message handlers. Overrides the message handler
+     *
+     * @param batchHandler A batch handler
+     * @return The current builder
+     */
+    public Builder<T> setBatchHandler(BatchHandler<T> batchHandler) {
+      this.batchHandler = batchHandler;
+      return this;
+    }
+
     public DisruptorBroker<T> build() throws Exception {
-      if (messageHandler == null) {
+      if (messageHandler == null && batchHandler == null) {
         throw new Exception("Must provide a message handler or a constructor");
       }
       return new DisruptorBroker<>(this);
@@ -191,11 +330,26 @@ public class DisruptorBroker<T> extends Broker<T> {
     }
 
     public boolean isLowLatency() {
-      return lowLatency;
+      return waitMode == WaitMode.BUSY_SPIN;
     }
 
+    /**
+     * Same as setWaitMode(BUSY_SPIN) if true, setWaitMode(BLOCKING) otherwise
+     *
+     * @param lowLatency Whether to busy spin
+     * @return The current builder
+     */
     public Builder<T> setLowLatency(boolean lowLatency) {
-      this.lowLatency = lowLatency;
+      this.waitMode = lowLatency ? WaitMode.BUSY_SPIN : WaitMode.BLOCKING;
+      return this;
+    }
+
+    public WaitMode getWaitMode() {
+      return waitMode;
+    }
+
+    public Builder<T> setWaitMode(WaitMode waitMode) {
+      this.waitMode = waitMode;
       return this;
     }
 
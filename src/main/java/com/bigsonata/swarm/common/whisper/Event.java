@@ -5,6 +5,10 @@ public class Event<T> {
   private T message;
   private String topic = null;
 
+  public String getTopic() {
+    return topic;
+  }
+
   public Event<T> setTopic(String topic) {
     this.topic = topic;
     return this;
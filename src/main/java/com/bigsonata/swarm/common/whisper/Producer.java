@@ -3,6 +3,7 @@ package com.bigsonata.swarm.common.whisper;
 import com.bigsonata.swarm.common.Disposable;
 import com.bigsonata.swarm.common.Initializable;
 
+import java.util.List;
 import java.util.function.Consumer;
 
 public abstract class Producer<T> implements Disposable, Initializable {
@@ -25,6 +26,88 @@ public abstract class Producer<T> implements Disposable, Initializable {
     produce(null, message);
   }
 
+  /**
+   * Try to send a message without blocking. By default, a producer which can't tell whether there's
+   * room for it sends it synchronously
+   *
+   * @param topic Topic
+   * @param message Message
+   * @return False if there's no room for the message at the moment
+   * @throws Exception Exception
+   */
+  public boolean tryProduce(String topic, T message) throws Exception {
+    produce(topic, message);
+    return true;
+  }
+
+  /**
+   * Try to send a message without blocking. NOTE: topic is ignored and setMessage to null
+   *
+   * @param message A message
+   * @return False if there's no room for the message at the moment
+   * @throws Exception Exception
+   */
+  public boolean tryProduce(T message) throws Exception {
+    return tryProduce(null, message);
+  }
+
+  /**
+   * Send messages synchronously, as a whole batch if supported. By default, they're sent one by
+   * one
+   *
+   * @param topic Topic
+   * @param messages Messages
+   * @throws Exception Exception
+   */
+  public void produceBatch(String topic, List<? extends T> messages) throws Exception {
+    for (T message : messages) {
+      produce(topic, message);
+    }
+  }
+
+  /**
+   * Send messages synchronously, as a whole batch if supported. NOTE: topic is ignored and
+   * setMessage to null
+   *
+   * @param messages Messages
+   * @throws Exception Exception
+   */
+  public void produceBatch(List<? extends T> messages) throws Exception {
+    produceBatch(null, messages);
+  }
+
+  /**
+   * Try to send as many messages as possible (from the head of the list) without blocking. By
+   * default, they're sent one by one until there's no room left
+   *
+   * @param topic Topic
+   * @param messages Messages
+   * @return Number of messages sent
+   * @throws Exception Exception
+   */
+  public int tryProduceBatch(String topic, List<? extends T> messages) throws Exception {
+    int sent = 0;
+    for (T message : messages) {
+      if (!tryProduce(topic, message)) {
+        break;
+      }
+      sent++;
+    }
+    return sent;
+  }
+
+  /**
+   * Try to send as many messages as possible (from the head of the list) without blocking. NOTE:
+   * topic is ignored and setMessage to null
+   *
+   * @param messages Messages
+   * @return Number of messages sent
+   * @throws Exception Exception
+   */
+  public int tryProduceBatch(List<? extends T> messages) throws Exception {
+    return tryProduceBatch(null, messages);
+  }
+
   /**
    * Send messages asynchronously
    *
@@ -1,6 +1,7 @@
 package com.bigsonata.swarm.interop;
 
 import com.bigsonata.swarm.common.stats.Histogram;
+import com.bigsonata.swarm.common.stats.ResponseTimes;
 import org.msgpack.core.*;
 
 import java.io.IOException;
@@ -98,12 +99,29 @@ public class Message {
     return "hatch".equals(getType());
   }
 
+  public boolean isRps() {
+    return "rps".equals(getType());
+  }
+
   public Map getData() {
     return this.data;
   }
 
   public byte[] getBytes() throws IOException {
     MessageBufferPacker packer = MessagePack.newDefaultBufferPacker();
+    writeTo(packer);
+    byte[] bytes = packer.toByteArray();
+    packer.close();
+    return bytes;
+  }
+
+  /**
+   * Encode this message with a packer, e.g. to reuse its buffer across messages
+   *
+   * @param packer A packer
+   * @throws IOException IOException
+   */
+  public void writeTo(MessagePacker packer) throws IOException {
     Visitor visitor = new Visitor(packer);
     // a message contains three fields, (type & data & nodeID)
     packer.packArrayHeader(3);
@@ -118,9 +136,6 @@ public class Message {
       packer.packNil();
     }
     packer.packString(this.nodeID);
-    byte[] bytes = packer.toByteArray();
-    packer.close();
-    return bytes;
   }
 
   static class Visitor {
@@ -152,6 +167,8 @@ public class Message {
         visitList(value);
       } else if (value instanceof Histogram) {
         visitRps(value);
+      } else if (value instanceof ResponseTimes) {
+        visitResponseTimes(value);
       } else {
         throw new IOException("Cannot pack type unknown type:" + value.getClass().getSimpleName());
       }
@@ -213,5 +230,19 @@ public class Message {
         packer.packInt(data);
       }
     }
+
+    /** Pack the buckets which aren't empty, as a map of (rounded) response times to counts */
+    void visitResponseTimes(Object value) throws IOException {
+      ResponseTimes responseTimes = (ResponseTimes) value;
+      packer.packMapHeader(responseTimes.countBuckets());
+      int size = responseTimes.size();
+      for (int bucket = 0; bucket < size; bucket++) {
+        long count = responseTimes.count(bucket);
+        if (count > 0) {
+          packer.packLong(ResponseTimes.valueOf(bucket));
+          packer.packLong(count);
+        }
+      }
+    }
   }
 }
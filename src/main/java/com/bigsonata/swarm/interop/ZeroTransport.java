@@ -1,14 +1,18 @@
 package com.bigsonata.swarm.interop;
 
 import com.bigsonata.swarm.Context;
+import com.bigsonata.swarm.common.whisper.BatchHandler;
 import com.bigsonata.swarm.common.whisper.DisruptorBroker;
-import com.bigsonata.swarm.common.whisper.MessageHandler;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessagePacker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.zeromq.ZContext;
 import org.zeromq.ZMQ;
 import org.zeromq.ZMonitor;
 
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -20,6 +24,7 @@ public abstract class ZeroTransport extends Transport {
   private final String host;
   private final String nodeId;
   private final String addr;
+  private final DisruptorBroker.WaitMode waitMode;
   AtomicReference<State> state = new AtomicReference<State>(Transport.State.DISCONNECTED);
   private int checkInterval = 0;
   private LoopingThread receiver;
@@ -34,6 +39,7 @@ public abstract class ZeroTransport extends Transport {
     this.port = ctx.getMasterPort();
     this.addr = String.format("tcp://%s:%d", host, port);
     this.nodeId = ctx.getNodeId();
+    this.waitMode = ctx.getTransportWaitMode();
     if (checkInterval > 0) {
       this.checkInterval = checkInterval;
     }
@@ -45,25 +51,13 @@ public abstract class ZeroTransport extends Transport {
       if (sender != null) {
         return;
       }
-      MessageHandler<Message> messageHandler =
-          (s, message) -> {
-            if (message == null) {
-              return;
-            }
-            byte[] bytes = message.getBytes();
-            try {
-              if (!commSocket.send(bytes)) {
-                logger.error("Can NOT send");
-                return;
-              }
-            } catch (Exception ex) {
-              return;
-            }
-            if (message.isQuit()) {
-              waiter.countDown();
-            }
-          };
-      this.sender = DisruptorBroker.Builder.newInstance().setMessageHandler(messageHandler).build();
+      this.sender =
+          DisruptorBroker.Builder.newInstance()
+              .setBatchHandler(new Outbox())
+              .setWaitMode(waitMode)
+              // sent from the receiver, heartbeat, stats and shutdown threads alike
+              .setProducerMode(DisruptorBroker.ProducerMode.MULTIPLE)
+              .build();
       this.sender.initialize();
     } catch (Exception e) {
       e.printStackTrace();
@@ -180,6 +174,13 @@ public abstract class ZeroTransport extends Transport {
     logger.info("Initialized");
   }
 
+  /**
+   * Queue a message to the master. Safe to call from any thread: messages are written to the
+   * socket by the sender's thread only
+   *
+   * @param message A Message
+   * @throws Exception Exception
+   */
   public void send(Message message) throws Exception {
     if (this.commSocket == null) {
       logger.warn("Please bootstrap() first");
@@ -227,6 +228,82 @@ public abstract class ZeroTransport extends Transport {
     }
   }
 
+  /**
+   * Encodes pending messages back to back into a single reusable buffer, then sends them all at
+   * the end of each batch. Each message still goes out as its own frame, as the master expects,
+   * but a burst (stats, heartbeats and control replies at once) is queued to ZeroMQ in one go:
+   * its I/O thread is woken up once and can write the whole burst at once.
+   */
+  private class Outbox implements BatchHandler<Message> {
+    private final Frames frames = new Frames();
+    private MessagePacker packer = MessagePack.newDefaultPacker(frames);
+    // where each pending frame ends
+    private int[] ends = new int[16];
+    private int count = 0;
+    private boolean quitting = false;
+
+    @Override
+    public void consume(String topic, Message message, boolean endOfBatch) throws Exception {
+      if (message != null) {
+        int start = frames.size();
+        try {
+          message.writeTo(packer);
+          packer.flush();
+          if (count == ends.length) {
+            ends = Arrays.copyOf(ends, count * 2);
+          }
+          ends[count++] = frames.size();
+          quitting |= message.isQuit();
+        } catch (Exception e) {
+          e.printStackTrace();
+          logger.error("Can NOT encode `{}` message", message.getType());
+          // drop whatever the packer buffered of it, too
+          packer = MessagePack.newDefaultPacker(frames);
+          frames.truncate(start);
+        }
+      }
+      if (endOfBatch) {
+        flush();
+      }
+    }
+
+    private void flush() {
+      try {
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+          if (!commSocket.send(frames.array(), start, ends[i] - start, 0)) {
+            logger.error("Can NOT send");
+          }
+          start = ends[i];
+        }
+      } catch (Exception ex) {
+        // disconnected, the messages are dropped
+      } finally {
+        frames.reset();
+        count = 0;
+      }
+      if (quitting) {
+        quitting = false;
+        waiter.countDown();
+      }
+    }
+  }
+
+  /** A byte buffer which exposes its backing array, to send slices of it without copying */
+  private static class Frames extends ByteArrayOutputStream {
+    Frames() {
+      super(4096);
+    }
+
+    byte[] array() {
+      return buf;
+    }
+
+    void truncate(int size) {
+      count = size;
+    }
+  }
+
   class TransportMonitor extends LoopingThread {
     ZMQ.Socket socket;
     int reconnectCounter = 0;
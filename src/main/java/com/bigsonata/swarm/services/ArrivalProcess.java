@@ -0,0 +1,9 @@
+package com.bigsonata.swarm.services;
+
+/** How requests arrive when the scheduler runs with a target arrival rate */
+public enum ArrivalProcess {
+  /** Requests are evenly spaced */
+  FIXED,
+  /** Gaps between requests are exponentially distributed around the target rate */
+  POISSON
+}
@@ -0,0 +1,138 @@
+package com.bigsonata.swarm.services;
+
+import com.bigsonata.swarm.Locust;
+import com.bigsonata.swarm.common.Disposable;
+import com.bigsonata.swarm.common.Initializable;
+import com.bigsonata.swarm.interop.LoopingThread;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Adjusts the user count or the target RPS of a running test so that a latency percentile stays
+ * under a target, and keeps track of the highest throughput sustained under that target.
+ *
+ * <p>The controller searches like a bisection: the load grows by a factor while the target holds,
+ * and shrinks by the same factor when it's exceeded. The factor is halved every time the search
+ * changes direction, so the load converges towards the limit.
+ */
+public class Autoscaler implements Disposable, Initializable {
+  private static final Logger logger =
+      LoggerFactory.getLogger(Autoscaler.class.getCanonicalName());
+  private static final double INITIAL_GAIN = 0.5;
+  private static final double MINIMUM_GAIN = 0.02;
+  private final Locust locust;
+  private final Stats stats;
+  private final Target target;
+  private final double percentile;
+  private final long latency;
+  private final int interval;
+  private LoopingThread controllerTimer;
+  private volatile double bestRps = 0;
+
+  public Autoscaler(
+      Locust locust, Stats stats, Target target, double percentile, long latency, int interval) {
+    this.locust = locust;
+    this.stats = stats;
+    this.target = target;
+    this.percentile = percentile;
+    this.latency = latency;
+    this.interval = interval;
+  }
+
+  /**
+   * Get the highest throughput measured while the latency target held
+   *
+   * @return Requests per second
+   */
+  public double getBestRps() {
+    return bestRps;
+  }
+
+  @Override
+  public void dispose() {
+    if (null != this.controllerTimer) {
+      this.controllerTimer.dispose();
+    }
+    logger.info("Best sustainable throughput: {} RPS", String.format("%.1f", bestRps));
+  }
+
+  @Override
+  public void initialize() {
+    if (this.controllerTimer != null) {
+      return;
+    }
+    logger.info("Initializing...");
+    logger.info("> target=p{} <= {} ms", percentile * 100, latency);
+    logger.info("> adjusting={}", target);
+    this.controllerTimer =
+        new LoopingThread("swarm-autoscaler", interval) {
+          double gain = INITIAL_GAIN;
+          Boolean growing = null;
+          double value = 0;
+
+          @Override
+          public Action process() {
+            if (!locust.isRunning()) {
+              gain = INITIAL_GAIN;
+              growing = null;
+              value = 0;
+              bestRps = 0;
+              return Action.CONTINUE;
+            }
+            double rps = stats.getIntervalRps();
+            if (rps <= 0) {
+              return Action.CONTINUE;
+            }
+            if (value <= 0) {
+              value = target == Target.USERS ? locust.getUserCount() : rps;
+            }
+            // precise latencies are in us, the target is in ms
+            double current = stats.getIntervalLatencies().percentile(percentile) / 1000.0;
+            boolean holding = current <= latency;
+            if (holding && rps > bestRps) {
+              bestRps = rps;
+            }
+            if (growing != null && growing != holding) {
+              // we've just crossed the limit, narrow down the search
+              gain = Math.max(MINIMUM_GAIN, gain / 2);
+            }
+            growing = holding;
+            if (holding && target == Target.RPS) {
+              // step from what's actually achieved, not from a target it may fall short of
+              value = Math.min(value, rps) * (1 + gain);
+            } else {
+              value = holding ? value * (1 + gain) : value / (1 + gain);
+            }
+            logger.info(
+                "p{}={} ms, {} RPS => {}={} (best: {} RPS)",
+                percentile * 100,
+                String.format("%.3f", current),
+                String.format("%.1f", rps),
+                target,
+                String.format("%.1f", value),
+                String.format("%.1f", bestRps));
+            apply();
+            return Action.CONTINUE;
+          }
+
+          void apply() {
+            if (target == Target.RPS) {
+              locust.setTargetRps(value);
+              return;
+            }
+            int users = Math.max(1, (int) Math.round(value));
+            int delta = Math.abs(users - locust.getUserCount());
+            if (delta > 0) {
+              locust.setUserCount(users, Math.max(1, delta * 1000.0 / interval));
+            }
+          }
+        };
+    logger.info("Initialized");
+  }
+
+  /** What the autoscaler adjusts */
+  public enum Target {
+    USERS,
+    RPS
+  }
+}
@@ -6,9 +6,11 @@ import com.bigsonata.swarm.common.Initializable;
 import com.bigsonata.swarm.interop.LoopingThread;
 import com.bigsonata.swarm.interop.Message;
 import com.bigsonata.swarm.interop.Transport;
+import com.sun.management.OperatingSystemMXBean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.management.ManagementFactory;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -51,9 +53,11 @@ public class Beat implements Disposable, Initializable {
             try {
               counter = (++counter) % 20;
               if (counter == 0) logger.info("Beating...");
-              Map<String, String> data = new HashMap<>();
-              data.put("current_cpu_usage", (int) (osBean.getProcessCpuLoad()*100));
+              // numbers and booleans, the master compares them as such
+              Map<String, Object> data = new HashMap<>();
+              data.put("current_cpu_usage", (int) (osBean.getProcessCpuLoad() * 100));
               data.put("state", String.valueOf(locust.getState()).toLowerCase());
+              data.put("saturated", locust.isSaturated());
               transport.send(new Message("heartbeat", data, Beat.this.locust.nodeID));
             } catch (Exception e) {
               return Action.BREAK;
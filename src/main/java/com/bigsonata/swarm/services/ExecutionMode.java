@@ -0,0 +1,11 @@
+package com.bigsonata.swarm.services;
+
+/** How the scheduler runs its clones */
+public enum ExecutionMode {
+  /** Clones are dispatched to a fixed pool of Disruptor workers */
+  DISRUPTOR,
+  /** Clones are pinned to per-worker shards, and idle workers steal from the others */
+  SHARDED,
+  /** Each clone runs on its own virtual thread. Requires JDK 21+ */
+  VIRTUAL_THREADS
+}
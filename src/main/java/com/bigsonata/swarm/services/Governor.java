@@ -0,0 +1,212 @@
+package com.bigsonata.swarm.services;
+
+import com.bigsonata.swarm.Locust;
+import com.bigsonata.swarm.common.Disposable;
+import com.bigsonata.swarm.common.Initializable;
+import com.bigsonata.swarm.common.Utils;
+import com.bigsonata.swarm.interop.LoopingThread;
+import com.sun.management.OperatingSystemMXBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Backs off when the generator's own JVM is overloaded, since the latencies it reports would then
+ * measure its own CPU starvation and GC pauses rather than the target.
+ *
+ * <p>Every interval, it samples the process CPU load, the share of time spent in GC and the heap
+ * occupancy left after the last collection (so that garbage waiting to be collected doesn't
+ * count). While any of them is over its limit, hatching is paused and the dispatch rate is capped
+ * 20% below the throughput last measured, then lowered further as long as the overload lasts, but
+ * never below a quarter of that throughput. Once every resource stays under its limit for a few
+ * intervals in a row, the cap is lifted and hatching resumes.
+ */
+public class Governor implements Disposable, Initializable {
+  private static final Logger logger = LoggerFactory.getLogger(Governor.class.getCanonicalName());
+  private static final double BACKOFF = 0.8;
+  /** The cap never goes below this share of the throughput measured when the overload started */
+  private static final double FLOOR = 0.25;
+  private static final int RECOVERY = 3;
+  private final OperatingSystemMXBean osBean =
+      ManagementFactory.getPlatformMXBean(OperatingSystemMXBean.class);
+  private final List<MemoryPoolMXBean> poolBeans = ManagementFactory.getMemoryPoolMXBeans();
+  private final List<GarbageCollectorMXBean> gcBeans =
+      ManagementFactory.getGarbageCollectorMXBeans();
+  private final Locust locust;
+  private final Scheduler scheduler;
+  private final Stats stats;
+  private final double maxCpu;
+  private final double maxGc;
+  private final double maxHeap;
+  private final int interval;
+  private LoopingThread governorTimer;
+  private volatile boolean active = false;
+  private long activeSince = 0;
+  private long activeTime = 0;
+
+  /**
+   * @param maxCpu Maximum process CPU load, between 0 and 1. Zero or less to ignore
+   * @param maxGc Maximum share of time spent in GC, between 0 and 1. Zero or less to ignore
+   * @param maxHeap Maximum heap occupancy, between 0 and 1. Zero or less to ignore
+   * @param interval Sampling interval (in ms)
+   */
+  public Governor(
+      Locust locust,
+      Scheduler scheduler,
+      Stats stats,
+      double maxCpu,
+      double maxGc,
+      double maxHeap,
+      int interval) {
+    this.locust = locust;
+    this.scheduler = scheduler;
+    this.stats = stats;
+    this.maxCpu = maxCpu;
+    this.maxGc = maxGc;
+    this.maxHeap = maxHeap;
+    this.interval = interval;
+  }
+
+  /**
+   * Whether the load is being held back at the moment
+   *
+   * @return True if active
+   */
+  public boolean isActive() {
+    return active;
+  }
+
+  @Override
+  public void dispose() {
+    if (null != this.governorTimer) {
+      this.governorTimer.dispose();
+    }
+    if (active) {
+      activeTime += Utils.now() - activeSince;
+    }
+    logger.info("Held the load back for {} ms in total", activeTime);
+  }
+
+  @Override
+  public void initialize() {
+    if (this.governorTimer != null) {
+      return;
+    }
+    logger.info("Initializing...");
+    logger.info("> maxCpu={}", maxCpu);
+    logger.info("> maxGc={}", maxGc);
+    logger.info("> maxHeap={}", maxHeap);
+    this.governorTimer =
+        new LoopingThread("swarm-governor", interval) {
+          long lastGcTime = getGcTime();
+          long lastSample = Utils.now();
+          long lastCount = 0;
+          double baseline = 0;
+          double cap = 0;
+          int healthy = 0;
+
+          @Override
+          public Action process() {
+            long now = Utils.now();
+            long gcTime = getGcTime();
+            long elapsed = Math.max(1, now - lastSample);
+            double gc = (gcTime - lastGcTime) / (double) elapsed;
+            lastGcTime = gcTime;
+            lastSample = now;
+            // our own measure, for when the stats haven't reported any interval yet
+            long count = stats.getCumulativeLatencies().getCount();
+            double rps = count >= lastCount ? (count - lastCount) * 1000.0 / elapsed : 0;
+            lastCount = count;
+
+            List<String> overloads = new ArrayList<>(3);
+            double cpu = osBean.getProcessCpuLoad();
+            if (maxCpu > 0 && cpu > maxCpu) {
+              overloads.add(String.format("cpu=%.2f", cpu));
+            }
+            if (maxGc > 0 && gc > maxGc) {
+              overloads.add(String.format("gc=%.2f", gc));
+            }
+            double heap = getHeapOccupancy();
+            if (maxHeap > 0 && heap > maxHeap) {
+              overloads.add(String.format("heap=%.2f", heap));
+            }
+
+            if (!locust.isRunning()) {
+              lift();
+              return Action.CONTINUE;
+            }
+            if (!overloads.isEmpty()) {
+              healthy = 0;
+              if (!active) {
+                active = true;
+                activeSince = now;
+                locust.setHatchingPaused(true);
+              }
+              if (baseline <= 0) {
+                // retried until some throughput is measured, there's nothing to cap before
+                baseline = stats.getIntervalRps() > 0 ? stats.getIntervalRps() : rps;
+                cap = baseline;
+              }
+              if (baseline > 0) {
+                cap = Math.max(Math.max(1, baseline * FLOOR), cap * BACKOFF);
+                scheduler.setThrottle(cap);
+              }
+              logger.warn("Generator overloaded ({}), dispatch cap={} RPS", overloads, (long) cap);
+              return Action.CONTINUE;
+            }
+            if (active && ++healthy >= RECOVERY) {
+              lift();
+            }
+            return Action.CONTINUE;
+          }
+
+          void lift() {
+            healthy = 0;
+            baseline = 0;
+            cap = 0;
+            if (!active) {
+              return;
+            }
+            active = false;
+            long elapsed = Utils.now() - activeSince;
+            activeTime += elapsed;
+            scheduler.setThrottle(0);
+            locust.setHatchingPaused(false);
+            logger.info("Generator recovered, lifting the cap after {} ms", elapsed);
+          }
+        };
+    logger.info("Initialized");
+  }
+
+  private long getGcTime() {
+    long total = 0;
+    for (GarbageCollectorMXBean gcBean : gcBeans) {
+      total += Math.max(0, gcBean.getCollectionTime());
+    }
+    return total;
+  }
+
+  /** @return The highest occupancy of a heap pool right after its last collection */
+  private double getHeapOccupancy() {
+    double occupancy = 0;
+    for (MemoryPoolMXBean poolBean : poolBeans) {
+      if (poolBean.getType() != MemoryType.HEAP || !poolBean.isValid()) {
+        continue;
+      }
+      MemoryUsage usage = poolBean.getCollectionUsage();
+      if (usage == null) {
+        continue;
+      }
+      long max = usage.getMax() > 0 ? usage.getMax() : usage.getCommitted();
+      occupancy = Math.max(occupancy, usage.getUsed() / (double) Math.max(1, max));
+    }
+    return occupancy;
+  }
+}
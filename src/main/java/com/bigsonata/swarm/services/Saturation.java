@@ -0,0 +1,120 @@
+package com.bigsonata.swarm.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tells whether the load generator itself keeps up with the load. It records the dispatch lag of
+ * every execution, that is how late a task started running compared to when it was ready to run,
+ * and samples the occupancy of the scheduler's ring.
+ *
+ * <p>Lags are counted in power-of-2 buckets (of us), so percentiles are upper bounds within a
+ * factor of 2. That's plenty to tell a saturated generator from a slow target, at the cost of an
+ * uncontended add per execution.
+ */
+public class Saturation {
+  private static final Logger logger = LoggerFactory.getLogger(Saturation.class);
+  private static final double MAX_OCCUPANCY = 0.9;
+  private final long threshold;
+  private final LongAdder[] buckets = new LongAdder[Long.SIZE];
+  private final LongAccumulator maxLag = new LongAccumulator(Long::max, 0);
+  private final LongAccumulator maxOccupancy = new LongAccumulator(Long::max, 0);
+  private volatile boolean saturated = false;
+
+  /** @param threshold p99 dispatch lag (in ms) above which the generator is saturated */
+  Saturation(long threshold) {
+    this.threshold = threshold;
+    for (int i = 0; i < buckets.length; i++) {
+      buckets[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * Record the dispatch lag of an execution
+   *
+   * @param lag Lag (in ns)
+   */
+  void record(long lag) {
+    long micros = Math.max(0, lag / 1000);
+    buckets[Long.SIZE - Long.numberOfLeadingZeros(micros)].increment();
+    maxLag.accumulate(micros);
+  }
+
+  /**
+   * Sample the occupancy of the ring
+   *
+   * @param occupancy A number between 0 (empty) and 1 (full)
+   */
+  void sample(double occupancy) {
+    maxOccupancy.accumulate((long) (occupancy * 1000));
+  }
+
+  /**
+   * Whether the generator was saturated during the last interval
+   *
+   * @return True if saturated
+   */
+  public boolean isSaturated() {
+    return saturated;
+  }
+
+  /**
+   * Summarize the interval since the last snapshot, then start a new one
+   *
+   * @return Lag percentiles (in ms), the highest ring occupancy and the saturation flag
+   */
+  public Map<String, Object> snapshot() {
+    long[] counts = new long[buckets.length];
+    long count = 0;
+    for (int i = 0; i < buckets.length; i++) {
+      counts[i] = buckets[i].sumThenReset();
+      count += counts[i];
+    }
+    double p50 = toMillis(percentile(counts, count, 0.5));
+    double p99 = toMillis(percentile(counts, count, 0.99));
+    double max = toMillis(maxLag.getThenReset());
+    double occupancy = maxOccupancy.getThenReset() / 1000.0;
+
+    boolean saturated = p99 > threshold || occupancy >= MAX_OCCUPANCY;
+    if (saturated != this.saturated) {
+      if (saturated) {
+        logger.warn(
+            "Generator saturated: p99 dispatch lag={} ms, ring occupancy={}", p99, occupancy);
+      } else {
+        logger.info("Generator keeps up again");
+      }
+    }
+    this.saturated = saturated;
+
+    Map<String, Object> data = new HashMap<>(5);
+    data.put("dispatch_lag_p50", p50);
+    data.put("dispatch_lag_p99", p99);
+    data.put("dispatch_lag_max", max);
+    data.put("ring_occupancy", occupancy);
+    data.put("saturated", saturated);
+    return data;
+  }
+
+  /** @return Upper bound (in us) of the bucket holding the percentile */
+  private static long percentile(long[] counts, long count, double percentile) {
+    long rank = (long) Math.ceil(percentile * count);
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank && seen > 0) {
+        return i == 0 ? 0 : 1L << i;
+      }
+    }
+    return 0;
+  }
+
+  private static double toMillis(long micros) {
+    return micros / (double) TimeUnit.MILLISECONDS.toMicros(1);
+  }
+}
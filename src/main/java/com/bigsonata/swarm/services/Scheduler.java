@@ -2,31 +2,94 @@ package com.bigsonata.swarm.services;
 
 import com.bigsonata.swarm.Cron;
 import com.bigsonata.swarm.Locust;
-import com.bigsonata.swarm.common.CircularList;
-import com.bigsonata.swarm.common.ConcurrentCircularList;
 import com.bigsonata.swarm.common.Disposable;
 import com.bigsonata.swarm.common.Initializable;
+import com.bigsonata.swarm.common.TokenBucket;
+import com.bigsonata.swarm.common.Utils;
+import com.bigsonata.swarm.common.VirtualThreads;
 import com.bigsonata.swarm.common.whisper.DisruptorBroker;
 import com.bigsonata.swarm.common.whisper.MessageHandler;
-import com.google.common.util.concurrent.RateLimiter;
+import com.bigsonata.swarm.interop.LoopingThread;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
-/** @author anhld on 7/28/18 */
-public class Scheduler implements Runnable, Disposable, Initializable {
+/**
+ * Dispatches clones to a pool of Disruptor workers. Each clone is split into as many {@link Task}s
+ * as its concurrency limit. A task is published once when its clone is submitted, then
+ * re-published every time its execution completes. An execution reclaimed after a timeout is
+ * recorded as a failure, but its task is only re-published once it returns. There is no polling
+ * thread: the scheduler only works when a clone is hatched or completed.
+ *
+ * <p>With a target arrival rate, the scheduler runs an open model instead: a pacer thread releases
+ * arrivals from a {@link TimingRing} regardless of response times, and completed tasks wait in an
+ * idle pool until an arrival claims them.
+ *
+ * <p>Tasks whose crons declare pacing or think time are parked on a {@link TimingWheel} until
+ * they are due, so a waiting user costs no thread. The same goes for tasks throttled by the global
+ * or their crons' RPS limits: they wait on the wheel until their permits are valid, so an
+ * expensive cron with a low limit never blocks a worker the others need.
+ *
+ * <p>In {@link ExecutionMode#VIRTUAL_THREADS} mode, tasks are not published to the ring: each task
+ * runs its executions on its own virtual thread, which parks between executions and is unparked
+ * when the task is dispatched again. Rate limiting, pacing and timeouts work the same way.
+ *
+ * <p>In {@link ExecutionMode#SHARDED} mode, tasks are pinned to the shards of a {@link
+ * ShardedExecutor} when they're hatched, instead of sharing a single ring.
+ *
+ * @author anhld on 7/28/18
+ */
+public class Scheduler implements Disposable, Initializable {
   private static final Logger logger = LoggerFactory.getLogger(Scheduler.class);
+  private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+  private static final int DRAIN_BATCH = 256;
   private final Builder builder;
-  protected AtomicInteger pending = new AtomicInteger(0);
-  @Nullable private RateLimiter rateLimiter;
-  private Thread executor = null;
+  @Nullable private volatile TokenBucket rateLimiter;
+  /** Cap on top of the target RPS, see {@link #setThrottle(double)} */
+  @Nullable private volatile TokenBucket throttle;
+  private volatile double throttleRps = 0;
+  /** Target arrival rate, when running an open model */
+  private volatile double arrivalRate = 0;
+  /** RPS limits of crons, by name */
+  private final Map<String, TokenBucket> limiters = new ConcurrentHashMap<>();
+  private long tickNanos = 0;
   private DisruptorBroker<Runnable> disruptor = null;
-  private CircularList<Cron> queue = new ConcurrentCircularList<>();
+  private ShardedExecutor sharded = null;
+  private final AtomicInteger hatched = new AtomicInteger(0);
+  /** Number of reclaimed executions which haven't returned yet, as of the last reaping */
+  private volatile int reclaimedPending = 0;
+  final Saturation saturation;
+  private LoopingThread reaper = null;
+  private LoopingThread pacer = null;
+  private LoopingThread ticker = null;
+  private TimingWheel wheel = null;
+  @Nullable private TimingRing timing = null;
+  /** Tasks waiting for an arrival */
+  private final Queue<Task> idle = new ConcurrentLinkedQueue<>();
+  private final Queue<Task> tasks = new ConcurrentLinkedQueue<>();
+  /** Tasks which can NOT be published because the ring is full at the moment */
+  private final Queue<Task> backlog = new ConcurrentLinkedQueue<>();
+  /** Tasks resumed by the timing wheel on a tick. Owned by the wheel's thread */
+  private final List<Task> resumed = new ArrayList<>();
 
   private Scheduler(Builder builder) {
     this.builder = builder;
+    this.saturation = new Saturation(builder.saturationThreshold);
     initialize();
   }
 
@@ -35,9 +98,14 @@ public class Scheduler implements Runnable, Disposable, Initializable {
   }
 
   public void initialize() {
-    if (builder.maxRps > 0) {
+    if (builder.arrivalRate > 0) {
+      logger.info(
+          "Setting arrival rate to {} ({})", builder.arrivalRate, builder.arrivalProcess);
+      arrivalRate = builder.arrivalRate;
+      timing = new TimingRing(builder.bufferSize, builder.arrivalRate, builder.arrivalProcess);
+    } else if (builder.maxRps > 0) {
       logger.info("Setting max RPS to {}", builder.maxRps);
-      rateLimiter = RateLimiter.create(builder.maxRps);
+      rateLimiter = new TokenBucket(builder.maxRps);
     }
     MessageHandler<Runnable> handler =
         (s, task) -> {
@@ -48,18 +116,54 @@ public class Scheduler implements Runnable, Disposable, Initializable {
             logger.error("Error when processing events. Detail: {}", e.getMessage());
           }
         };
+    tickNanos = TimeUnit.MILLISECONDS.toNanos(builder.tickDuration);
     try {
-      disruptor =
-          DisruptorBroker.newBuilder()
-              .setBufferSize(builder.bufferSize)
-              .setMessageHandler(handler)
-              .setParallelism(builder.parallelism)
-              .build();
-      disruptor.initialize();
+      logger.info("Running clones with {}", builder.executionMode);
+      if (builder.executionMode == ExecutionMode.DISRUPTOR) {
+        disruptor =
+            DisruptorBroker.newBuilder()
+                .setBufferSize(builder.bufferSize)
+                .setMessageHandler(handler)
+                .setParallelism(builder.parallelism)
+                .setWaitMode(builder.waitMode)
+                // clones are re-published by the workers themselves
+                .setProducerMode(DisruptorBroker.ProducerMode.MULTIPLE)
+                .build();
+        disruptor.initialize();
+      } else if (builder.executionMode == ExecutionMode.SHARDED) {
+        sharded = new ShardedExecutor(builder.parallelism);
+      }
+
+      wheel = new TimingWheel(builder.wheelSize, tickNanos, this::resume);
+      ticker =
+          new LoopingThread("swarm-wheel") {
+            @Override
+            public Action process() {
+              wheel.run();
+              return Action.BREAK;
+            }
+          };
 
-      executor = new Thread(this, "swarm-scheduler");
-      executor.start();
+      reaper =
+          new LoopingThread("swarm-reaper", builder.reapInterval) {
+            @Override
+            public Action process() {
+              saturation.sample(getOccupancy());
+              reap();
+              return Action.CONTINUE;
+            }
+          };
 
+      if (timing != null) {
+        pacer =
+            new LoopingThread("swarm-pacer") {
+              @Override
+              public Action process() {
+                pace();
+                return Action.BREAK;
+              }
+            };
+      }
     } catch (Exception e) {
       e.printStackTrace();
       logger.error("Can NOT initialize. Terminating now...");
@@ -67,87 +171,528 @@ public class Scheduler implements Runnable, Disposable, Initializable {
     }
   }
 
-  /** Invoke this method externally to signify a task is completed */
-  public void done() {
+  /**
+   * Signify an execution of a task is completed, or a reclaimed one has finally returned. The
+   * task is dispatched again right away.
+   *
+   * @param task The completed task
+   */
+  void done(Task task) {
+    if (this.builder.locust.isStopped()) {
+      return;
+    }
+    long waitTime = task.getWaitTime(Utils.now());
+    if (waitTime > 0) {
+      wheel.park(task, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitTime));
+      return;
+    }
+    if (timing != null) {
+      idle.offer(task);
+      match();
+      return;
+    }
+    dispatch(task);
+  }
+
+  /**
+   * Make tasks available again, once they have waited. Those ready to run are published as a
+   * single batch
+   *
+   * @param due Tasks due on the current tick of the timing wheel
+   */
+  private void resume(List<Task> due) {
     if (this.builder.locust.isStopped()) {
       return;
     }
-    this.pending.decrementAndGet();
+    boolean arrived = false;
+    for (Task task : due) {
+      if (task.throttled) {
+        // its permit is valid now
+        task.throttled = false;
+        task.readyAt = task.deadline;
+        resumed.add(task);
+      } else if (timing != null) {
+        idle.offer(task);
+        arrived = true;
+      } else if (admit(task)) {
+        resumed.add(task);
+      }
+    }
+    if (arrived) {
+      match();
+    }
+    publish(resumed);
+    resumed.clear();
+  }
+
+  /** Hand released arrivals to idle tasks, and publish them as a single batch */
+  private void match() {
+    List<Task> batch = null;
+    Task task;
+    while ((task = idle.poll()) != null) {
+      if (!task.isSchedulable()) {
+        // cancelled by a retire or a stop, don't waste an arrival on it
+        continue;
+      }
+      long intendedAt = timing.claim();
+      if (intendedAt < 0) {
+        idle.offer(task);
+        break;
+      }
+      if (!task.schedule(intendedAt)) {
+        // cancelled in the meantime
+        timing.handBack(intendedAt);
+        continue;
+      }
+      // the arrival rate stands for the global limits, but a cron may have its own
+      if (task.limiter == null || hold(task, task.limiter.reserve())) {
+        if (batch == null) {
+          batch = new ArrayList<>();
+        }
+        batch.add(task);
+      }
+    }
+    if (batch != null) {
+      publish(batch);
+    }
+  }
+
+  /** Release arrivals on time. Runs on the pacer thread until it's interrupted */
+  private void pace() {
+    boolean running = false;
+    while (!Thread.currentThread().isInterrupted()) {
+      if (tasks.isEmpty() || this.builder.locust.isStopped()) {
+        running = false;
+        LockSupport.parkNanos(IDLE_NANOS);
+        continue;
+      }
+      long now = System.nanoTime();
+      if (!running) {
+        timing.restart(now);
+        running = true;
+      }
+      long next = timing.release(now);
+      match();
+      // the ring is full of overdue arrivals, wait for some clones to complete
+      LockSupport.parkNanos(next < 0 ? IDLE_NANOS : next - now);
+    }
+  }
+
+  private void dispatch(Task task) {
+    if (admit(task)) {
+      publish(task);
+    }
   }
 
-  /** Wait until our number of pending tasks is not too large */
-  private void await() {
+  /**
+   * Mark a task as waiting for a worker, and reserve its permits. If they're not valid yet, the
+   * task is parked on the timing wheel until they are
+   *
+   * @param task The task
+   * @return True if the task can be published right away
+   */
+  private boolean admit(Task task) {
+    if (!task.schedule()) {
+      return false;
+    }
+    long waitTime = 0;
+    TokenBucket rateLimiter = this.rateLimiter;
     if (rateLimiter != null) {
-      rateLimiter.acquire();
+      waitTime = rateLimiter.reserve();
+    }
+    if (task.limiter != null) {
+      waitTime = Math.max(waitTime, task.limiter.reserve());
     }
-    while (this.pending.get() > builder.bufferSize) {
-      idle();
+    TokenBucket throttle = this.throttle;
+    if (throttle != null) {
+      waitTime = Math.max(waitTime, throttle.reserve());
     }
+    return hold(task, waitTime);
   }
 
-  public void stop() {
-    queue.forEach((cron) -> cron.dispose());
-    queue.clear();
-    this.pending.set(0);
+  /**
+   * Park a scheduled task on the timing wheel until its permits are valid, unless they're about to
+   *
+   * @param task The task
+   * @param waitTime Time (in ns) until its permits are valid
+   * @return True if the task can be published right away
+   */
+  private boolean hold(Task task, long waitTime) {
+    if (waitTime >= tickNanos) {
+      task.throttled = true;
+      wheel.park(task, System.nanoTime() + waitTime);
+      return false;
+    }
+    return true;
   }
 
-  public void dispose() {
+  private void publish(Task task) {
+    if (sharded != null) {
+      sharded.execute(task);
+      return;
+    }
     if (disruptor == null) {
+      wake(task);
       return;
     }
-    logger.warn("Disposing ...");
-    executor.interrupt();
-
-    stop();
-
     try {
-      disruptor.dispose();
+      if (!backlog.isEmpty() || !disruptor.tryProduce(task)) {
+        backlog.offer(task);
+      }
+      drain();
     } catch (Exception e) {
-      // don't care
+      e.printStackTrace();
     }
   }
 
-  private void idle() {
+  /**
+   * Publish several tasks at once. As many as fit are published as one range of the ring, so
+   * workers are signalled once rather than once per task
+   *
+   * @param batch The tasks. Not retained
+   */
+  private void publish(List<Task> batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+    if (disruptor == null || batch.size() == 1) {
+      batch.forEach(this::publish);
+      return;
+    }
     try {
-      Thread.sleep(100);
-    } catch (InterruptedException e) {
+      int published = backlog.isEmpty() ? disruptor.tryProduceBatch(batch) : 0;
+      for (int i = published; i < batch.size(); i++) {
+        backlog.offer(batch.get(i));
+      }
+      drain();
+    } catch (Exception e) {
+      e.printStackTrace();
     }
   }
 
-  public void submit(Cron cron) {
-    queue.add(cron);
+  /** Move as many tasks as possible from our backlog to the ring, a batch at a time */
+  private void drain() throws Exception {
+    if (backlog.isEmpty()) {
+      return;
+    }
+    List<Task> batch = new ArrayList<>(DRAIN_BATCH);
+    while (true) {
+      Task task;
+      while (batch.size() < DRAIN_BATCH && (task = backlog.poll()) != null) {
+        batch.add(task);
+      }
+      if (batch.isEmpty()) {
+        return;
+      }
+      int published = disruptor.tryProduceBatch(batch);
+      for (int i = published; i < batch.size(); i++) {
+        backlog.offer(batch.get(i));
+      }
+      if (published < batch.size()) {
+        return;
+      }
+      batch.clear();
+    }
   }
 
-  @Override
-  public void run() {
-    while (!Thread.currentThread().isInterrupted()) {
-      if (queue.size() == 0 || this.builder.locust.isStopped()) {
-        // try not to bombard our CPU
-        idle();
+  /**
+   * Let the virtual thread of a task know the task is dispatched again
+   *
+   * @param task The task
+   */
+  private void wake(Task task) {
+    Thread owner = task.owner;
+    if (owner == Thread.currentThread()) {
+      // its own thread will pick it up right away
+      return;
+    }
+    int epoch = task.epoch.get();
+    if (epoch == 0) {
+      // a brand new task. A task isn't dispatched again before its execution returns (even once
+      // reclaimed), so its thread never hangs on a previous one and a single thread is enough
+      if (task.epoch.compareAndSet(0, 1)) {
+        VirtualThreads.start("swarm-clone-" + task.cron.getName(), () -> loop(task, 1));
+      }
+      return;
+    }
+    if (owner != null) {
+      LockSupport.unpark(owner);
+    }
+    // otherwise its thread is starting, and will find the task idle
+  }
+
+  /**
+   * Run the executions of a task on the calling (virtual) thread
+   *
+   * @param task The task
+   * @param epoch Once the task's epoch moves on, this loop belongs to an abandoned thread
+   */
+  private void loop(Task task, int epoch) {
+    if (task.epoch.get() != epoch) {
+      return;
+    }
+    // published before checking the state, so a wake-up in between is never lost
+    task.owner = Thread.currentThread();
+    while (task.epoch.get() == epoch && !task.isCancelled()) {
+      if (task.getState() != Task.State.IDLE) {
+        LockSupport.park(this);
         continue;
       }
-      queue.forEach(
-          (cron) -> {
-            await();
-            if (this.builder.locust.isStopped()) {
-              return;
-            }
-            this.pending.incrementAndGet();
-            try {
-              disruptor.produce(cron);
-            } catch (Exception e) {
-              e.printStackTrace();
-            }
-          });
+      try {
+        task.run();
+      } catch (Exception e) {
+        e.printStackTrace();
+        logger.error("Error when processing events. Detail: {}", e.getMessage());
+      }
+    }
+    if (task.epoch.compareAndSet(epoch, epoch + 1)) {
+      task.owner = null;
+    }
+  }
+
+  /**
+   * Get how full the ring is, counting the tasks backed up behind it. In SHARDED mode, get the
+   * share of the tasks which wait in the shards for a worker instead
+   *
+   * @return A number between 0 (empty) and 1 (full). Always 0 in VIRTUAL_THREADS mode
+   */
+  private double getOccupancy() {
+    if (sharded != null) {
+      return Math.min(1, sharded.pending() / (double) Math.max(1, tasks.size()));
+    }
+    if (disruptor == null) {
+      return 0;
+    }
+    long pending = disruptor.getOccupancy() + backlog.size();
+    return Math.min(1, pending / (double) builder.bufferSize);
+  }
+
+  /**
+   * Get the saturation detector of this scheduler
+   *
+   * @return The detector
+   */
+  public Saturation getSaturation() {
+    return saturation;
+  }
+
+  /**
+   * Reclaim executions which take longer than their crons' timeouts. They are recorded as failures
+   * now, and their tasks dispatched again once they return
+   */
+  private void reap() {
+    long now = Utils.now();
+    int pending = 0;
+    for (Task task : tasks) {
+      Cron cron = task.current;
+      long timeout = cron.getTimeout();
+      if (timeout <= 0) {
+        continue;
+      }
+      long elapsed = task.reclaim(timeout, now);
+      if (elapsed >= 0) {
+        logger.debug("Reclaiming a `{}` execution after {} ms", cron.getName(), elapsed);
+        cron.recordFailure(elapsed, "Execution timed out");
+      }
+      if (task.getState() == Task.State.RECLAIMED) {
+        pending++;
+      }
+    }
+    if (pending > 0 && reclaimedPending == 0) {
+      logger.warn("{} reclaimed executions still hold their workers", pending);
+    }
+    reclaimedPending = pending;
+  }
+
+  /**
+   * Get the number of executions reclaimed after a timeout which haven't returned yet. Each of
+   * them still holds a worker (or a thread), and its clone
+   *
+   * @return The number of executions, as of the last reaping
+   */
+  public int getReclaimedPending() {
+    return reclaimedPending;
+  }
+
+  /**
+   * Change the target RPS on the fly: the arrival rate when running an open model, or the maximum
+   * RPS otherwise
+   *
+   * @param rps Requests per second. Zero or a negative number removes the maximum RPS. An open
+   *     model can't run without an arrival rate though: it then keeps its current one
+   */
+  public void setTargetRps(double rps) {
+    if (timing != null) {
+      if (rps <= 0) {
+        logger.warn("Ignoring arrival rate {}, keeping {}", rps, arrivalRate);
+        return;
+      }
+      logger.info("Changing arrival rate to {}", rps);
+      arrivalRate = rps;
+      applyArrivalRate();
+      return;
+    }
+    TokenBucket rateLimiter = this.rateLimiter;
+    logger.info("Changing max RPS to {}", rps);
+    if (rps <= 0) {
+      this.rateLimiter = null;
+    } else if (rateLimiter == null) {
+      this.rateLimiter = new TokenBucket(rps);
+    } else {
+      rateLimiter.setRate(rps);
+    }
+  }
+
+  /**
+   * Cap the dispatch rate below the target RPS for a while, e.g. while the generator itself is
+   * overloaded. The target RPS is left untouched, and applies again once the cap is lifted
+   *
+   * @param rps Requests per second. Zero or a negative number lifts the cap
+   */
+  public void setThrottle(double rps) {
+    throttleRps = rps;
+    if (timing != null) {
+      applyArrivalRate();
+      return;
+    }
+    TokenBucket throttle = this.throttle;
+    if (rps <= 0) {
+      this.throttle = null;
+    } else if (throttle == null) {
+      this.throttle = new TokenBucket(rps);
+    } else {
+      throttle.setRate(rps);
+    }
+  }
+
+  private void applyArrivalRate() {
+    double cap = throttleRps;
+    timing.setRate(cap > 0 ? Math.min(arrivalRate, cap) : arrivalRate);
+  }
+
+  /**
+   * Stop and dispose some clones, while the others keep running
+   *
+   * @param clones The clones to retire
+   */
+  public void retire(Collection<Cron> clones) {
+    Set<Cron> retired = Collections.newSetFromMap(new IdentityHashMap<>());
+    retired.addAll(clones);
+    Iterator<Task> iterator = tasks.iterator();
+    while (iterator.hasNext()) {
+      Task task = iterator.next();
+      if (!retired.contains(task.cron)) {
+        continue;
+      }
+      task.cancel();
+      iterator.remove();
+      Thread owner = task.owner;
+      if (owner != null) {
+        LockSupport.unpark(owner);
+      }
+    }
+    idle.removeIf((task) -> retired.contains(task.cron));
+    retired.forEach((cron) -> cron.dispose());
+  }
+
+  public void stop() {
+    park().forEach((cron) -> cron.dispose());
+  }
+
+  /**
+   * Stop running all the clones, but leave them initialized so that they can be submitted again.
+   * A clone which is still finishing an execution (or waiting for an async one) can't be submitted
+   * again safely: it's disposed instead
+   *
+   * @return The clones which were running, and are at rest now
+   */
+  public Set<Cron> park() {
+    Set<Cron> clones = Collections.newSetFromMap(new IdentityHashMap<>());
+    Set<Cron> busy = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (Task task : tasks) {
+      if (task.cancel()) {
+        busy.add(task.cron);
+      }
+      clones.add(task.cron);
+      Thread owner = task.owner;
+      if (owner != null) {
+        LockSupport.unpark(owner);
+      }
+    }
+    tasks.clear();
+    backlog.clear();
+    idle.clear();
+    clones.removeAll(busy);
+    busy.forEach((cron) -> cron.dispose());
+    return clones;
+  }
+
+  public void dispose() {
+    if (reaper == null) {
+      return;
+    }
+    logger.warn("Disposing ...");
+    reaper.dispose();
+    ticker.dispose();
+    if (pacer != null) {
+      pacer.dispose();
+    }
+
+    stop();
+
+    if (sharded != null) {
+      sharded.dispose();
+    }
+    if (disruptor == null) {
+      return;
+    }
+    try {
+      disruptor.dispose();
+    } catch (Exception e) {
+      // don't care
     }
+  }
 
-    logger.info("Terminating...");
+  public void submit(Cron cron) {
+    TokenBucket limiter = null;
+    if (cron.getMaxRps() > 0) {
+      limiter =
+          limiters.computeIfAbsent(cron.getName(), (name) -> new TokenBucket(cron.getMaxRps()));
+    }
+    int concurrency = Math.max(1, cron.getConcurrency());
+    List<Task> batch = new ArrayList<>(concurrency);
+    for (int i = 0; i < concurrency; i++) {
+      Task task = new Task(cron, this);
+      task.limiter = limiter;
+      if (sharded != null) {
+        task.shard = Math.floorMod(hatched.getAndIncrement(), sharded.size());
+      }
+      tasks.add(task);
+      if (timing != null) {
+        idle.offer(task);
+      } else if (admit(task)) {
+        batch.add(task);
+      }
+    }
+    if (timing != null) {
+      match();
+    }
+    // all the tasks of a clone go out together
+    publish(batch);
   }
 
   public static class Builder {
     private int parallelism = 8;
     private int bufferSize = 1024;
     private int maxRps = -1;
+    private int reapInterval = 100;
+    private ExecutionMode executionMode = ExecutionMode.DISRUPTOR;
+    private int tickDuration = 1;
+    private int wheelSize = 1024;
+    private double arrivalRate = -1;
+    private ArrivalProcess arrivalProcess = ArrivalProcess.FIXED;
+    private long saturationThreshold = 10;
+    private DisruptorBroker.WaitMode waitMode = DisruptorBroker.WaitMode.BLOCKING;
     private Locust locust;
 
     public Builder setParallelism(int parallelism) {
@@ -165,6 +710,84 @@ public class Scheduler implements Runnable, Disposable, Initializable {
       return this;
     }
 
+    /**
+     * Set how often executions are checked against their crons' timeouts
+     *
+     * @param reapInterval Interval (in ms)
+     * @return The current Builder instance
+     */
+    public Builder setReapInterval(int reapInterval) {
+      this.reapInterval = reapInterval;
+      return this;
+    }
+
+    public Builder setExecutionMode(ExecutionMode executionMode) {
+      this.executionMode = executionMode;
+      return this;
+    }
+
+    /**
+     * Set the resolution of pacing and think time
+     *
+     * @param tickDuration Duration of a timing wheel's tick (in ms)
+     * @return The current Builder instance
+     */
+    public Builder setTickDuration(int tickDuration) {
+      this.tickDuration = tickDuration;
+      return this;
+    }
+
+    /**
+     * Set the number of buckets in the timing wheel. Waits longer than a full turn of the wheel
+     * simply take more rounds
+     *
+     * @param wheelSize A positive number which is a power of 2
+     * @return The current Builder instance
+     */
+    public Builder setWheelSize(int wheelSize) {
+      this.wheelSize = wheelSize;
+      return this;
+    }
+
+    /**
+     * Issue requests at the given rate regardless of response times, instead of re-dispatching
+     * clones as soon as they complete
+     *
+     * @param arrivalRate Requests per second. Zero or a negative number disables the open model
+     * @return The current Builder instance
+     */
+    public Builder setArrivalRate(double arrivalRate) {
+      this.arrivalRate = arrivalRate;
+      return this;
+    }
+
+    public Builder setArrivalProcess(ArrivalProcess arrivalProcess) {
+      this.arrivalProcess = arrivalProcess;
+      return this;
+    }
+
+    /**
+     * Set the p99 dispatch lag above which the generator is reported as saturated
+     *
+     * @param saturationThreshold Lag (in ms)
+     * @return The current Builder instance
+     */
+    public Builder setSaturationThreshold(long saturationThreshold) {
+      this.saturationThreshold = saturationThreshold;
+      return this;
+    }
+
+    /**
+     * Set how the workers wait for tasks (in DISRUPTOR mode)
+     *
+     * @param waitMode The wait mode
+     * @return The current Builder instance
+     */
+    public Builder setWaitMode(DisruptorBroker.WaitMode waitMode) {
+      this.waitMode = waitMode;
+      return this;
+    }
+
     public Builder setLocust(Locust locust) {
       this.locust = locust;
       return this;
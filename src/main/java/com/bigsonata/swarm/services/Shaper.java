@@ -0,0 +1,106 @@
+package com.bigsonata.swarm.services;
+
+import com.bigsonata.swarm.LoadShape;
+import com.bigsonata.swarm.Locust;
+import com.bigsonata.swarm.common.Disposable;
+import com.bigsonata.swarm.common.Initializable;
+import com.bigsonata.swarm.common.Utils;
+import com.bigsonata.swarm.interop.LoopingThread;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+
+/**
+ * Drives the user count and/or the target RPS of a running test along {@link LoadShape}s. The
+ * shapes start over every time a test starts.
+ */
+public class Shaper implements Disposable, Initializable {
+  private static final Logger logger = LoggerFactory.getLogger(Shaper.class.getCanonicalName());
+  private final Locust locust;
+  @Nullable private final LoadShape userShape;
+  @Nullable private final LoadShape rpsShape;
+  private final int interval;
+  private LoopingThread shaperTimer;
+
+  public Shaper(
+      Locust locust, @Nullable LoadShape userShape, @Nullable LoadShape rpsShape, int interval) {
+    this.locust = locust;
+    this.userShape = userShape;
+    this.rpsShape = rpsShape;
+    this.interval = interval;
+  }
+
+  @Override
+  public void dispose() {
+    if (null != this.shaperTimer) {
+      this.shaperTimer.dispose();
+    }
+  }
+
+  @Override
+  public void initialize() {
+    if (this.shaperTimer != null) {
+      return;
+    }
+    logger.info("Initializing...");
+    this.shaperTimer =
+        new LoopingThread("swarm-shaper", interval) {
+          long startTime = -1;
+          int users = -1;
+          double rps = -1;
+          boolean completed = false;
+
+          @Override
+          public Action process() {
+            if (!locust.isRunning()) {
+              startTime = -1;
+              return Action.CONTINUE;
+            }
+            long now = Utils.now();
+            if (startTime < 0) {
+              startTime = now;
+              users = -1;
+              rps = -1;
+              completed = false;
+            }
+            if (completed) {
+              return Action.CONTINUE;
+            }
+            long elapsed = now - startTime;
+            boolean over = true;
+            if (userShape != null) {
+              double value = userShape.valueAt(elapsed);
+              if (value >= 0) {
+                over = false;
+                int target = (int) Math.round(value);
+                if (target != users) {
+                  // complete every transition within a single interval
+                  int delta = Math.abs(target - Math.max(0, users));
+                  double hatchRate = Math.max(1, delta * 1000.0 / Math.max(1, interval));
+                  users = target;
+                  locust.setUserCount(target, hatchRate);
+                }
+              }
+            }
+            if (rpsShape != null) {
+              double value = rpsShape.valueAt(elapsed);
+              if (value >= 0) {
+                over = false;
+                // zero would lift the limit altogether
+                if (value > 0 && value != rps) {
+                  rps = value;
+                  locust.setTargetRps(value);
+                }
+              }
+            }
+            if (over) {
+              completed = true;
+              logger.info("Load shapes completed after {} ms, holding the last targets", elapsed);
+            }
+            return Action.CONTINUE;
+          }
+        };
+    logger.info("Initialized");
+  }
+}
@@ -0,0 +1,144 @@
+package com.bigsonata.swarm.services;
+
+import com.bigsonata.swarm.common.Disposable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs tasks on a fixed set of worker threads, each of them owning a shard. A task is pinned to a
+ * shard when it's hatched, so it's always dispatched to the same worker (and mostly by that very
+ * worker, once it completes). A worker whose own shard is empty steals tasks from the others.
+ *
+ * <p>A shard is a work-stealing deque, which only its worker pushes to: tasks dispatched by any
+ * other thread (hatching, timers, async completions, thieves) go through an inbox its worker drains
+ * into the deque.
+ */
+class ShardedExecutor implements Disposable {
+  private static final Logger logger = LoggerFactory.getLogger(ShardedExecutor.class);
+  private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+  private final Shard[] shards;
+
+  ShardedExecutor(int parallelism) {
+    shards = new Shard[parallelism];
+    for (int i = 0; i < parallelism; i++) {
+      shards[i] = new Shard(i);
+    }
+    for (Shard shard : shards) {
+      shard.thread.start();
+    }
+  }
+
+  int size() {
+    return shards.length;
+  }
+
+  void execute(Task task) {
+    Shard shard = shards[task.shard];
+    if (Thread.currentThread() == shard.thread) {
+      shard.deque.push(task);
+      return;
+    }
+    shard.inbox.offer(task);
+    if (shard.parked) {
+      LockSupport.unpark(shard.thread);
+    }
+  }
+
+  /**
+   * Get the number of tasks waiting for a worker, across all shards
+   *
+   * @return The number of tasks
+   */
+  int pending() {
+    int pending = 0;
+    for (Shard shard : shards) {
+      pending += shard.deque.size() + shard.inbox.size();
+    }
+    return pending;
+  }
+
+  @Override
+  public void dispose() {
+    for (Shard shard : shards) {
+      shard.thread.interrupt();
+    }
+  }
+
+  private class Shard implements Runnable {
+    final int index;
+    final TaskDeque deque = new TaskDeque();
+    final Queue<Task> inbox = new ConcurrentLinkedQueue<>();
+    final Thread thread;
+    volatile boolean parked = false;
+
+    Shard(int index) {
+      this.index = index;
+      this.thread = new Thread(this, "swarm-shard-" + index);
+      this.thread.setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+      while (!Thread.currentThread().isInterrupted()) {
+        Task task = deque.pop();
+        if (task == null) {
+          task = drain();
+        }
+        if (task == null) {
+          task = steal();
+        }
+        if (task == null) {
+          parked = true;
+          if (inbox.isEmpty()) {
+            LockSupport.parkNanos(this, PARK_NANOS);
+          }
+          parked = false;
+          continue;
+        }
+        try {
+          task.run();
+        } catch (Exception e) {
+          e.printStackTrace();
+          logger.error("Error when processing events. Detail: {}", e.getMessage());
+        }
+      }
+    }
+
+    /** Move the inbox into the deque, and take its oldest task */
+    private Task drain() {
+      Task first = inbox.poll();
+      if (first == null) {
+        return null;
+      }
+      for (Task task = inbox.poll(); task != null; task = inbox.poll()) {
+        deque.push(task);
+      }
+      return first;
+    }
+
+    private Task steal() {
+      int count = shards.length;
+      int offset = ThreadLocalRandom.current().nextInt(count);
+      for (int i = 0; i < count; i++) {
+        Shard victim = shards[(offset + i) % count];
+        if (victim == this) {
+          continue;
+        }
+        Task task = victim.deque.steal();
+        if (task == null) {
+          task = victim.inbox.poll();
+        }
+        if (task != null) {
+          return task;
+        }
+      }
+      return null;
+    }
+  }
+}
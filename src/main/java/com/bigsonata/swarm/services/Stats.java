@@ -5,10 +5,20 @@ import com.bigsonata.swarm.common.Disposable;
 import com.bigsonata.swarm.common.Initializable;
 import com.bigsonata.swarm.common.Utils;
 import com.bigsonata.swarm.interop.LoopingThread;
+import com.bigsonata.swarm.common.stats.LatencyHistogram;
 import com.bigsonata.swarm.common.stats.RequestFailure;
 import com.bigsonata.swarm.common.stats.RequestSuccess;
+import com.bigsonata.swarm.common.stats.ResponseTimes;
 import com.bigsonata.swarm.common.stats.StatsEntry;
 import com.bigsonata.swarm.common.stats.StatsError;
+import com.bigsonata.swarm.common.stats.StatsHandle;
+import com.bigsonata.swarm.common.stats.StatsShard;
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.SleepingWaitStrategy;
+import com.lmax.disruptor.TimeoutException;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -16,15 +26,41 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Collects requests and reports them every stat interval.
+ *
+ * <p>Recording a request only copies a few primitives into a preallocated slot of a ring. A single
+ * ingesting thread owns all the aggregation state and records the slots into a {@link StatsShard},
+ * which the stats thread drains into every report. So recording allocates nothing, takes no lock,
+ * and costs the same whatever thread it runs on, e.g. a callback thread of an async client.
+ */
 public abstract class Stats implements Disposable, Initializable {
   private static final Logger logger =
       LoggerFactory.getLogger(Stats.class.getCanonicalName());
   private LoopingThread statsTimer;
-  private Map<String, StatsEntry> entries;
+  private Map<StatsHandle, StatsEntry> entries;
   private Map<String, StatsError> errors;
   private StatsEntry total;
   private int statInterval = 3000;
+  /** Response times & requests of the last reporting interval */
+  private volatile ResponseTimes intervalResponseTimes = null;
+  /** Latencies of the last reporting interval, by entry, and all together */
+  private Map<StatsHandle, LatencyHistogram> intervalLatencies = new HashMap<>();
+  private LatencyHistogram intervalTotalLatencies = new LatencyHistogram();
+  private volatile double intervalRps = 0;
+  private long intervalStart = Utils.now();
+  /** Bumped by clearAll, so that requests recorded before are dropped */
+  private volatile int generation = 0;
+  /** Written by the ingesting thread only */
+  private volatile StatsShard shard = null;
+  private final Disruptor<Sample> disruptor;
+  private final RingBuffer<Sample> ring;
+  /** Handles of the entries, by method then name */
+  private final Map<String, Map<String, StatsHandle>> handles = new ConcurrentHashMap<>();
+  private int nextId = 0;
 
   public Stats(Context ctx) {
     this.entries = new HashMap<>(8);
@@ -32,6 +68,20 @@ public abstract class Stats implements Disposable, Initializable {
     this.total = new StatsEntry("Total");
     this.total.reset();
     this.statInterval = ctx.getStatInterval();
+    this.disruptor =
+        new Disruptor<>(
+            Sample::new,
+            ctx.getStatsBufferSize(),
+            r -> {
+              Thread t = new Thread(r, "locust-stats-ingest");
+              t.setDaemon(true);
+              return t;
+            },
+            ProducerType.MULTI,
+            // recorders never signal anyone: the ingesting thread naps while idle
+            new SleepingWaitStrategy());
+    this.disruptor.handleEventsWith(new Ingester());
+    this.ring = this.disruptor.getRingBuffer();
   }
 
   public synchronized void initialize() {
@@ -39,6 +89,7 @@ public abstract class Stats implements Disposable, Initializable {
       return;
     }
     logger.info("Initializing...");
+    this.disruptor.start();
     this.statsTimer =
         new LoopingThread("locust-stats", statInterval) {
           @Override
@@ -60,58 +111,169 @@ public abstract class Stats implements Disposable, Initializable {
 
   public void dispose() {
     this.statsTimer.dispose();
+    try {
+      this.disruptor.shutdown(2, TimeUnit.SECONDS);
+    } catch (TimeoutException e) {
+      e.printStackTrace();
+      logger.error("Failed to ingest the pending requests. Detail: {}", e.getMessage());
+    }
   }
 
   public void report(RequestSuccess request) {
-    logRequest(request.type, request.name, request.responseTime, request.responseLength);
+    recordSuccess(request.type, request.name, request.responseTime, request.responseLength);
   }
 
   public void report(RequestFailure request) {
-    logError(request.type, request.name, request.error);
+    recordFailure(request.type, request.name, request.responseTime, request.error);
   }
 
-  protected StatsEntry get(String name, String method) {
-    StatsEntry entry = this.entries.get(name + method);
-    if (null == entry) {
-      entry = new StatsEntry(name, method);
-      entry.reset();
-      this.entries.put(name + method, entry);
-    }
-    return entry;
+  /**
+   * Record a successful request. Safe to call from any thread
+   *
+   * @param method Method
+   * @param name Name
+   * @param responseTime Response time (in ms)
+   * @param responseLength Content size
+   */
+  public void recordSuccess(String method, String name, long responseTime, long responseLength) {
+    record(intern(method, name), responseTime * 1000, responseLength, null);
+  }
+
+  /**
+   * Record a successful request. Safe to call from any thread
+   *
+   * @param handle Handle of its entry, see {@link #intern(String, String)}
+   * @param responseTime Response time (in ms)
+   * @param responseLength Content size
+   */
+  public void recordSuccess(StatsHandle handle, long responseTime, long responseLength) {
+    record(handle, responseTime * 1000, responseLength, null);
+  }
+
+  /**
+   * Record a successful request, timed to the microsecond. Safe to call from any thread
+   *
+   * @param method Method
+   * @param name Name
+   * @param latency Response time (in us)
+   * @param responseLength Content size
+   */
+  public void recordSuccessMicros(String method, String name, long latency, long responseLength) {
+    record(intern(method, name), latency, responseLength, null);
+  }
+
+  /**
+   * Record a successful request, timed to the microsecond. Safe to call from any thread
+   *
+   * @param handle Handle of its entry, see {@link #intern(String, String)}
+   * @param latency Response time (in us)
+   * @param responseLength Content size
+   */
+  public void recordSuccessMicros(StatsHandle handle, long latency, long responseLength) {
+    record(handle, latency, responseLength, null);
+  }
+
+  /**
+   * Record a failed request. Safe to call from any thread
+   *
+   * @param method Method
+   * @param name Name
+   * @param responseTime Response time (in ms)
+   * @param error Error
+   */
+  public void recordFailure(String method, String name, long responseTime, String error) {
+    recordFailure(intern(method, name), responseTime, error);
   }
 
-  protected void logRequest(String method, String name, long responseTime, long responseLength) {
-    this.total.log(responseTime, responseLength);
-    this.get(name, method).log(responseTime, responseLength);
+  /**
+   * Record a failed request. Safe to call from any thread
+   *
+   * @param handle Handle of its entry, see {@link #intern(String, String)}
+   * @param responseTime Response time (in ms)
+   * @param error Error
+   */
+  public void recordFailure(StatsHandle handle, long responseTime, String error) {
+    record(handle, responseTime * 1000, 0, error == null ? "" : error);
   }
 
-  protected void logError(String method, String name, String error) {
-    this.total.logError(error);
-    this.get(name, method).logError(error);
+  /**
+   * Get the handle of an entry, to record its requests without looking it up every time. Names
+   * known in advance are better resolved once, but dynamic ones can be interned on the fly
+   *
+   * @param method Method
+   * @param name Name
+   * @return The handle. Always the same one for the same method and name
+   */
+  public StatsHandle intern(String method, String name) {
+    Map<String, StatsHandle> names = handles.get(method);
+    StatsHandle handle = names == null ? null : names.get(name);
+    return handle != null ? handle : register(method, name);
+  }
 
-    String key = Utils.md5(method + name + error);
-    if (null == key) {
-      key = method + name + error;
+  private synchronized StatsHandle register(String method, String name) {
+    Map<String, StatsHandle> names =
+        handles.computeIfAbsent(method, k -> new ConcurrentHashMap<>());
+    StatsHandle handle = names.get(name);
+    if (handle == null) {
+      handle = new StatsHandle(nextId++, method, name);
+      names.put(name, handle);
     }
-    StatsError entry = this.errors.get(key);
-    if (null == entry) {
-      entry = new StatsError(name, method, error);
-      this.errors.put(key, entry);
+    return handle;
+  }
+
+  /**
+   * Get the handle of an entry, if any
+   *
+   * @return The handle. Or null if nothing was ever recorded for this method and name
+   */
+  private StatsHandle find(String method, String name) {
+    Map<String, StatsHandle> names = handles.get(method);
+    return names == null ? null : names.get(name);
+  }
+
+  /**
+   * Hand a request over to the ingesting thread. Waits for a free slot if the ring is full
+   *
+   * @param handle Handle of its entry
+   * @param latency Response time (in us)
+   * @param responseLength Content size
+   * @param error Error. Null if it succeeded
+   */
+  protected void record(StatsHandle handle, long latency, long responseLength, String error) {
+    long sequence = ring.next();
+    try {
+      Sample sample = ring.get(sequence);
+      sample.generation = generation;
+      sample.handle = handle;
+      sample.latency = latency;
+      sample.responseLength = responseLength;
+      sample.error = error;
+    } finally {
+      ring.publish(sequence);
     }
-    entry.occured();
   }
 
-  public void clearAll() {
+  public synchronized void clearAll() {
+    generation++;
     total = new StatsEntry("Total");
     total.reset();
     entries = new HashMap<>(8);
     errors = new HashMap<>(8);
+    intervalLatencies = new HashMap<>();
+    intervalTotalLatencies = new LatencyHistogram();
+  }
+
+  /** Merge what was ingested since the last visit into the entries */
+  private void drainShard() {
+    StatsShard shard = this.shard;
+    if (shard != null && shard.getGeneration() == generation) {
+      shard.drainInto(this.entries, this.errors);
+    }
   }
 
   protected List serializeStats() {
     List entries = new ArrayList(this.entries.size());
-    for (Map.Entry<String, StatsEntry> item : this.entries.entrySet()) {
-      StatsEntry entry = item.getValue();
+    for (StatsEntry entry : this.entries.values()) {
       if (!(entry.numRequests.get() == 0 && entry.numFailures.get() == 0)) {
         entries.add(entry.getStrippedReport());
       }
@@ -129,8 +291,137 @@ public abstract class Stats implements Disposable, Initializable {
     return errors;
   }
 
-  protected Map<String, Object> collectReportData() {
+  /**
+   * Get a percentile of the response times during the last reporting interval
+   *
+   * @param percentile A number between 0 and 1
+   * @return The response time (in ms). Or 0 if nothing is reported yet
+   */
+  public long getIntervalPercentile(double percentile) {
+    ResponseTimes histogram = this.intervalResponseTimes;
+    return histogram == null ? 0 : histogram.percentile(percentile);
+  }
+
+  /**
+   * Get the throughput during the last reporting interval
+   *
+   * @return Requests per second
+   */
+  public double getIntervalRps() {
+    return intervalRps;
+  }
+
+  /**
+   * Get the latencies of an entry during the last reporting interval
+   *
+   * @param method Method
+   * @param name Name
+   * @return A copy of its latencies (in us). Empty if nothing is reported yet
+   */
+  public synchronized LatencyHistogram getIntervalLatencies(String method, String name) {
+    LatencyHistogram latencies = intervalLatencies.get(find(method, name));
+    return latencies == null ? new LatencyHistogram() : latencies.copy();
+  }
+
+  /**
+   * Get the latencies of all the entries during the last reporting interval
+   *
+   * @return A copy of their latencies (in us). Empty if nothing is reported yet
+   */
+  public synchronized LatencyHistogram getIntervalLatencies() {
+    return intervalTotalLatencies.copy();
+  }
+
+  /**
+   * Get the latencies of an entry since the stats were cleared, i.e. since hatching
+   *
+   * @param method Method
+   * @param name Name
+   * @return A copy of its latencies (in us). Empty if nothing is recorded
+   */
+  public synchronized LatencyHistogram getCumulativeLatencies(String method, String name) {
+    drainShard();
+    StatsEntry entry = entries.get(find(method, name));
+    return entry == null ? new LatencyHistogram() : entry.cumulativeLatencies.copy();
+  }
+
+  /**
+   * Get the latencies of all the entries since the stats were cleared, i.e. since hatching
+   *
+   * @return A copy of their latencies (in us). Empty if nothing is recorded
+   */
+  public synchronized LatencyHistogram getCumulativeLatencies() {
+    drainShard();
+    LatencyHistogram latencies = new LatencyHistogram();
+    for (StatsEntry entry : entries.values()) {
+      latencies.add(entry.cumulativeLatencies);
+    }
+    return latencies;
+  }
+
+  /**
+   * Summarize the latencies of every entry since the stats were cleared, e.g. at the end of a run
+   *
+   * @return A table of their percentiles (in us)
+   */
+  public synchronized String summarize() {
+    drainShard();
+    StringBuilder summary = new StringBuilder("Latencies (in us) since hatching:");
+    String format = "%n%-8s %-40s %10s %10s %10s %10s %10s %10s %10s";
+    summary.append(
+        String.format(
+            format, "Method", "Name", "Requests", "Mean", "p50", "p99", "p99.9", "p99.99", "Max"));
+    LatencyHistogram all = new LatencyHistogram();
+    for (StatsEntry entry : entries.values()) {
+      summarize(summary, format, entry.method, entry.name, entry.cumulativeLatencies);
+      all.add(entry.cumulativeLatencies);
+    }
+    summarize(summary, format, "", total.name, all);
+    return summary.toString();
+  }
+
+  private static void summarize(
+      StringBuilder summary,
+      String format,
+      String method,
+      String name,
+      LatencyHistogram latencies) {
+    summary.append(
+        String.format(
+            format,
+            method,
+            name,
+            latencies.getCount(),
+            Math.round(latencies.getMean()),
+            latencies.percentile(0.5),
+            latencies.percentile(0.99),
+            latencies.percentile(0.999),
+            latencies.percentile(0.9999),
+            latencies.getMax()));
+  }
+
+  private void snapshotInterval() {
+    long now = Utils.now();
+    long elapsed = Math.max(1, now - intervalStart);
+    intervalStart = now;
+    intervalResponseTimes = this.total.responseTimes;
+    intervalRps = this.total.numRequests.get() * 1000.0 / elapsed;
+    // entries replace their histograms once reported, these ones won't change
+    Map<StatsHandle, LatencyHistogram> latencies = new HashMap<>();
+    for (Map.Entry<StatsHandle, StatsEntry> item : this.entries.entrySet()) {
+      latencies.put(item.getKey(), item.getValue().latencies);
+    }
+    intervalLatencies = latencies;
+    intervalTotalLatencies = this.total.latencies;
+  }
+
+  protected synchronized Map<String, Object> collectReportData() {
     Map<String, Object> data = new HashMap<String, Object>(3);
+    drainShard();
+    for (StatsEntry entry : this.entries.values()) {
+      this.total.add(entry);
+    }
+    snapshotInterval();
 
     data.put("stats", this.serializeStats());
     data.put("stats_total", this.total.getStrippedReport());
@@ -138,4 +429,47 @@ public abstract class Stats implements Disposable, Initializable {
 
     return data;
   }
+
+  /** A slot of the ring. Preallocated, and reused over and over */
+  private static class Sample {
+    int generation;
+    StatsHandle handle;
+    long latency;
+    long responseLength;
+    String error;
+  }
+
+  /** Runs on the ingesting thread, which owns the shard */
+  private class Ingester implements EventHandler<Sample> {
+    @Override
+    public void onEvent(Sample sample, long sequence, boolean endOfBatch) {
+      try {
+        ingest(sample);
+      } catch (Exception e) {
+        // an exception would halt the ingesting thread for good
+        e.printStackTrace();
+        logger.error("Failed to ingest a request. Detail: {}", e.getMessage());
+      } finally {
+        sample.handle = null;
+        sample.error = null;
+      }
+    }
+
+    private void ingest(Sample sample) {
+      if (sample.generation != generation) {
+        // recorded before the stats were cleared
+        return;
+      }
+      StatsShard shard = Stats.this.shard;
+      if (shard == null || shard.getGeneration() != sample.generation) {
+        shard = new StatsShard(sample.generation);
+        Stats.this.shard = shard;
+      }
+      if (sample.error == null) {
+        shard.log(sample.handle, sample.latency, sample.responseLength);
+      } else {
+        shard.logError(sample.handle, sample.error);
+      }
+    }
+  }
 }
@@ -0,0 +1,318 @@
+package com.bigsonata.swarm.services;
+
+import com.bigsonata.swarm.AsyncCron;
+import com.bigsonata.swarm.Cron;
+import com.bigsonata.swarm.common.TokenBucket;
+import com.bigsonata.swarm.common.Utils;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An execution slot of a clone. A clone owns as many tasks as its concurrency limit, and each task
+ * runs at most one {@link Cron#process()} at a time. An execution of an {@link AsyncCron} stays
+ * in flight until the stage it returns completes, without holding the worker which started it.
+ *
+ * <p>The state of a task is packed together with a generation number, which is bumped every time
+ * an execution completes or is reclaimed. A reclaimed execution is recorded as a failure right
+ * away, but the task of a sync one is only dispatched again once the execution returns: a clone
+ * never runs more executions than its concurrency limit, and a hung cron holds no more workers than
+ * it has tasks. Whatever the late execution records meanwhile is dropped. The task of an async
+ * execution is dispatched again right away instead, since its stage holds no worker.
+ *
+ * <p>When the scheduler runs with a target arrival rate, each execution also carries its intended
+ * start time, so the time it spent waiting for a free clone or worker can be added back to the
+ * latencies it records.
+ */
+public class Task implements Runnable {
+  private static final int STATE_BITS = 3;
+  private static final long STATE_MASK = (1 << STATE_BITS) - 1;
+  private static final long CANCELLED = STATE_MASK;
+  /** The execution running on the current thread, if any */
+  private static final ThreadLocal<Execution> running = ThreadLocal.withInitial(Execution::new);
+
+  final Cron cron;
+  /** The cron of the current (or last) execution, see {@link Cron#select()} */
+  volatile Cron current;
+  private final Scheduler scheduler;
+  private final AtomicLong status = new AtomicLong(pack(0, State.COMPLETED));
+  private volatile long startedAt = 0;
+  private long intendedAt = 0;
+  private long delay = 0;
+  // when it was ready for a worker (in ns), to measure the dispatch lag
+  long readyAt = 0;
+  // RPS limit of its cron (if any)
+  @Nullable TokenBucket limiter = null;
+  // whether it's waiting for a permit
+  boolean throttled = false;
+  // used in SHARDED mode
+  int shard = 0;
+  // used in VIRTUAL_THREADS mode: the thread of the current epoch, once it runs
+  volatile Thread owner = null;
+  final AtomicInteger epoch = new AtomicInteger(0);
+  // used by TimingWheel while this task is parked
+  Task next = null;
+  long deadline = 0;
+  long rounds = 0;
+
+  Task(Cron cron, Scheduler scheduler) {
+    this.cron = cron;
+    this.current = cron;
+    this.scheduler = scheduler;
+  }
+
+  private static long pack(long generation, State state) {
+    return (generation << STATE_BITS) | state.ordinal();
+  }
+
+  private static long generationOf(long status) {
+    return status >>> STATE_BITS;
+  }
+
+  /**
+   * Get the time the execution running on the calling thread has waited past its intended start
+   *
+   * @return The delay (in ms). Zero if there's no intended start time
+   */
+  public static long currentDelay() {
+    Task task = running.get().task;
+    return task == null ? 0 : task.delay;
+  }
+
+  /**
+   * Check whether the execution running on the calling thread has been reclaimed, i.e. whether
+   * what it records now must be dropped
+   *
+   * @return False if it's still running, or if there's no execution on this thread
+   */
+  public static boolean isCurrentReclaimed() {
+    Execution execution = running.get();
+    Task task = execution.task;
+    return task != null && generationOf(task.status.get()) != execution.generation;
+  }
+
+  /**
+   * Get the time this task should wait before its next execution, according to its cron's pacing
+   * or think time
+   *
+   * @param now The current timestamp (in ms)
+   * @return The delay (in ms)
+   */
+  long getWaitTime(long now) {
+    Cron cron = this.current;
+    long pacing = cron.getPacing();
+    if (pacing > 0) {
+      return Math.max(0, startedAt + pacing - now);
+    }
+    long min = cron.getMinThinkTime();
+    long max = cron.getMaxThinkTime();
+    if (max > min) {
+      return ThreadLocalRandom.current().nextLong(min, max + 1);
+    }
+    return Math.max(0, min);
+  }
+
+  public State getState() {
+    long current = status.get();
+    if ((current & STATE_MASK) == CANCELLED) {
+      return State.COMPLETED;
+    }
+    return State.values()[(int) (current & STATE_MASK)];
+  }
+
+  @Override
+  public void run() {
+    long current = status.get();
+    if ((current & STATE_MASK) != State.IDLE.ordinal()) {
+      // cancelled
+      return;
+    }
+    long generation = generationOf(current);
+    startedAt = Utils.now();
+    if (!status.compareAndSet(current, pack(generation, State.RUNNING))) {
+      return;
+    }
+    long start = System.nanoTime();
+    scheduler.saturation.record(start - readyAt);
+    delay = intendedAt > 0 ? Math.max(0, (start - intendedAt) / 1000000) : 0;
+    Cron cron = this.cron.select();
+    this.current = cron;
+    if (cron instanceof AsyncCron) {
+      runAsync((AsyncCron) cron, generation, start);
+      return;
+    }
+    Execution execution = running.get();
+    execution.set(this, generation);
+    try {
+      cron.run();
+    } finally {
+      execution.set(null, 0);
+      complete(generation);
+    }
+  }
+
+  private void runAsync(AsyncCron cron, long generation, long start) {
+    CompletionStage<?> stage;
+    try {
+      stage = cron.runAsync();
+    } catch (Exception e) {
+      record(cron, generation, start, null, e);
+      complete(generation);
+      return;
+    }
+    if (stage == null) {
+      complete(generation);
+      return;
+    }
+    stage.whenComplete(
+        (result, error) -> {
+          record(cron, generation, start, result, error);
+          complete(generation);
+        });
+  }
+
+  /** Record the outcome of an asynchronous execution */
+  private void record(AsyncCron cron, long generation, long start, Object result, Throwable error) {
+    if (generationOf(status.get()) != generation) {
+      // reclaimed in the meantime, already recorded as a failure
+      return;
+    }
+    long elapsed = System.nanoTime() - start;
+    // we may be on any thread here, make sure the delay is our own
+    Execution execution = running.get();
+    Task previous = execution.task;
+    long previousGeneration = execution.generation;
+    execution.set(this, generation);
+    try {
+      if (error == null) {
+        long responseLength = result instanceof Number ? ((Number) result).longValue() : 0;
+        cron.recordSuccessMicros(elapsed / 1000, responseLength);
+      } else {
+        Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+        cron.recordFailure(elapsed / 1000000, String.valueOf(cause));
+      }
+    } finally {
+      execution.set(previous, previousGeneration);
+    }
+  }
+
+  private void complete(long generation) {
+    long completed = pack(generation + 1, State.COMPLETED);
+    if (status.compareAndSet(pack(generation, State.RUNNING), completed)) {
+      scheduler.done(this);
+    } else if (status.compareAndSet(pack(generation + 1, State.RECLAIMED), completed)) {
+      // reclaimed in the meantime, and only free now
+      scheduler.done(this);
+    }
+    // otherwise cancelled in the meantime
+  }
+
+  /**
+   * Reclaim this task if its execution takes longer than the given timeout. The task of a sync
+   * execution is not completed until the execution returns, since it still holds a worker. An async
+   * one holds nothing but its stage, which may never complete: its task is completed (and
+   * dispatched again) right away
+   *
+   * @param timeout Timeout (in ms)
+   * @param now The current timestamp (in ms)
+   * @return Time spent (in ms) by the reclaimed execution. Otherwise, returns -1
+   */
+  long reclaim(long timeout, long now) {
+    long current = status.get();
+    if ((current & STATE_MASK) != State.RUNNING.ordinal()) {
+      return -1;
+    }
+    long elapsed = now - startedAt;
+    if (elapsed < timeout) {
+      return -1;
+    }
+    boolean async = this.current instanceof AsyncCron;
+    long next = pack(generationOf(current) + 1, async ? State.COMPLETED : State.RECLAIMED);
+    if (!status.compareAndSet(current, next)) {
+      return -1;
+    }
+    if (async) {
+      // whatever its stage completes with is dropped, as the generation moved on
+      scheduler.done(this);
+    }
+    return elapsed;
+  }
+
+  /**
+   * Mark this task as waiting for a worker
+   *
+   * @return False if the task is cancelled or not completed yet
+   */
+  boolean schedule() {
+    return schedule(0);
+  }
+
+  /**
+   * Mark this task as waiting for a worker
+   *
+   * @param intendedAt Intended start time (in ns), or 0 if there's none
+   * @return False if the task is cancelled or not completed yet
+   */
+  boolean schedule(long intendedAt) {
+    this.intendedAt = intendedAt;
+    this.readyAt = System.nanoTime();
+    long current = status.get();
+    if ((current & STATE_MASK) != State.COMPLETED.ordinal()) {
+      return false;
+    }
+    return status.compareAndSet(current, pack(generationOf(current), State.IDLE));
+  }
+
+  /**
+   * Check whether this task could be scheduled now
+   *
+   * @return False if the task is cancelled or not completed yet
+   */
+  boolean isSchedulable() {
+    return (status.get() & STATE_MASK) == State.COMPLETED.ordinal();
+  }
+
+  boolean isCancelled() {
+    return status.get() == CANCELLED;
+  }
+
+  /**
+   * Never run this task again
+   *
+   * @return Whether an execution was still in flight, reclaimed or not
+   */
+  boolean cancel() {
+    long previous = status.getAndSet(CANCELLED);
+    if (previous == CANCELLED) {
+      return false;
+    }
+    long state = previous & STATE_MASK;
+    return state == State.RUNNING.ordinal() || state == State.RECLAIMED.ordinal();
+  }
+
+  public enum State {
+    /** Waiting for a worker */
+    IDLE,
+    /** Being processed by a worker */
+    RUNNING,
+    /** Completed, waiting to be dispatched again */
+    COMPLETED,
+    /** Reclaimed after a timeout, waiting for its execution to return */
+    RECLAIMED
+  }
+
+  /** What runs on a thread: a task, and the generation of its execution */
+  private static class Execution {
+    Task task = null;
+    long generation = 0;
+
+    void set(Task task, long generation) {
+      this.task = task;
+      this.generation = generation;
+    }
+  }
+}
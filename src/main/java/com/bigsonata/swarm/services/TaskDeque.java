@@ -0,0 +1,101 @@
+package com.bigsonata.swarm.services;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A work-stealing deque of tasks (Chase and Lev's). Its owner pushes and pops tasks at the bottom
+ * without any CAS, unless a single task is left; other threads steal them from the top, one CAS
+ * each. The array grows when it's full, and never shrinks.
+ *
+ * <p>Slots aren't cleared once taken: tasks live as long as their clones anyway.
+ */
+class TaskDeque {
+  private static final int INITIAL_CAPACITY = 256;
+  private final AtomicLong top = new AtomicLong(0);
+  private volatile long bottom = 0;
+  private volatile AtomicReferenceArray<Task> array =
+      new AtomicReferenceArray<>(INITIAL_CAPACITY);
+
+  private static int indexOf(AtomicReferenceArray<Task> array, long position) {
+    return (int) position & (array.length() - 1);
+  }
+
+  /**
+   * Push a task. Must be called by the owner
+   *
+   * @param task The task
+   */
+  void push(Task task) {
+    long bottom = this.bottom;
+    long top = this.top.get();
+    AtomicReferenceArray<Task> array = this.array;
+    if (bottom - top >= array.length()) {
+      array = grow(array, top, bottom);
+    }
+    array.set(indexOf(array, bottom), task);
+    this.bottom = bottom + 1;
+  }
+
+  /**
+   * Pop the task pushed last. Must be called by the owner
+   *
+   * @return The task, or null if the deque is empty
+   */
+  Task pop() {
+    long bottom = this.bottom - 1;
+    AtomicReferenceArray<Task> array = this.array;
+    // a volatile write then a volatile read: thieves see the new bottom before we read the top
+    this.bottom = bottom;
+    long top = this.top.get();
+    if (top > bottom) {
+      this.bottom = bottom + 1;
+      return null;
+    }
+    Task task = array.get(indexOf(array, bottom));
+    if (top == bottom) {
+      // the last task, race the thieves for it
+      if (!this.top.compareAndSet(top, top + 1)) {
+        task = null;
+      }
+      this.bottom = bottom + 1;
+    }
+    return task;
+  }
+
+  /**
+   * Steal the task pushed first. May be called by any thread
+   *
+   * @return The task, or null if the deque is empty or another thread took it first
+   */
+  Task steal() {
+    long top = this.top.get();
+    long bottom = this.bottom;
+    if (top >= bottom) {
+      return null;
+    }
+    Task task = array.get(indexOf(array, top));
+    if (!this.top.compareAndSet(top, top + 1)) {
+      return null;
+    }
+    return task;
+  }
+
+  /**
+   * Get the number of tasks in the deque, which may be stale by the time it returns
+   *
+   * @return The number of tasks
+   */
+  int size() {
+    return (int) Math.max(0, bottom - top.get());
+  }
+
+  private AtomicReferenceArray<Task> grow(AtomicReferenceArray<Task> array, long top, long bottom) {
+    AtomicReferenceArray<Task> grown = new AtomicReferenceArray<>(array.length() * 2);
+    for (long position = top; position < bottom; position++) {
+      grown.set(indexOf(grown, position), array.get(indexOf(array, position)));
+    }
+    this.array = grown;
+    return grown;
+  }
+}
@@ -0,0 +1,143 @@
+package com.bigsonata.swarm.services;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A ring of precomputed intended start times (in nanoseconds, see {@link System#nanoTime()}).
+ *
+ * <p>A single pacer thread fills the ring ahead of time and releases each slot once its time has
+ * come. Released slots can then be claimed by any thread, so an arrival which finds no free clone
+ * keeps its intended start time until a clone completes. An arrival claimed for a clone which
+ * can't take it after all is handed back, and claimed again first.
+ */
+class TimingRing {
+  private final long[] slots;
+  private final int mask;
+  private volatile double intervalNanos;
+  private volatile boolean rescheduled = false;
+  private final ArrivalProcess process;
+  private final AtomicLong claimed = new AtomicLong(0);
+  private final Queue<Long> handedBack = new ConcurrentLinkedQueue<>();
+  private volatile long released = 0;
+  // owned by the pacer thread
+  private long filled = 0;
+  private double last = 0;
+
+  TimingRing(int capacity, double rate, ArrivalProcess process) {
+    this.slots = new long[capacity];
+    this.mask = capacity - 1;
+    this.intervalNanos = 1e9 / rate;
+    this.process = process;
+  }
+
+  /**
+   * Change the arrival rate. Arrivals which are already released keep their intended start times,
+   * the others are computed again
+   *
+   * @param rate Requests per second
+   */
+  void setRate(double rate) {
+    this.intervalNanos = 1e9 / rate;
+    this.rescheduled = true;
+  }
+
+  double getRate() {
+    return 1e9 / intervalNanos;
+  }
+
+  /**
+   * Start a new schedule. Must be called by the pacer thread
+   *
+   * @param start The first intended start time (in ns)
+   */
+  void restart(long start) {
+    handedBack.clear();
+    long cursor = claimed.get();
+    filled = cursor;
+    released = cursor;
+    last = start;
+  }
+
+  /** Precompute as many intended start times as our capacity allows */
+  private void fill() {
+    long limit = claimed.get() + slots.length;
+    while (filled < limit) {
+      slots[(int) (filled & mask)] = (long) last;
+      last += nextInterval();
+      filled++;
+    }
+  }
+
+  private double nextInterval() {
+    if (process == ArrivalProcess.POISSON) {
+      return -Math.log(1 - ThreadLocalRandom.current().nextDouble()) * intervalNanos;
+    }
+    return intervalNanos;
+  }
+
+  /**
+   * Release every arrival which is due. Must be called by the pacer thread
+   *
+   * @param now The current time (in ns)
+   * @return Intended start time of the next unreleased arrival. Or -1 if the ring is full of
+   *     released but unclaimed arrivals
+   */
+  long release(long now) {
+    if (rescheduled) {
+      rescheduled = false;
+      // drop every precomputed arrival which is not released yet
+      if (released < filled) {
+        last = slots[(int) (released & mask)];
+      }
+      filled = released;
+    }
+    fill();
+    long cursor = released;
+    while (cursor < filled) {
+      long due = slots[(int) (cursor & mask)];
+      if (due > now) {
+        released = cursor;
+        return due;
+      }
+      cursor++;
+    }
+    released = cursor;
+    return -1;
+  }
+
+  /**
+   * Claim the oldest released arrival
+   *
+   * @return Its intended start time (in ns). Or -1 if there's no released arrival
+   */
+  long claim() {
+    if (!handedBack.isEmpty()) {
+      Long due = handedBack.poll();
+      if (due != null) {
+        return due;
+      }
+    }
+    while (true) {
+      long cursor = claimed.get();
+      if (cursor >= released) {
+        return -1;
+      }
+      long due = slots[(int) (cursor & mask)];
+      if (claimed.compareAndSet(cursor, cursor + 1)) {
+        return due;
+      }
+    }
+  }
+
+  /**
+   * Hand back an arrival which was claimed but couldn't be used
+   *
+   * @param due Its intended start time (in ns)
+   */
+  void handBack(long due) {
+    handedBack.offer(due);
+  }
+}
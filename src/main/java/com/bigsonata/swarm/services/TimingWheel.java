@@ -0,0 +1,112 @@
+package com.bigsonata.swarm.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * A hashed timing wheel which parks tasks until they are due. Parked tasks are chained through
+ * their own fields, so parking a task allocates nothing and costs no thread.
+ *
+ * <p>Tasks can be parked from any thread: they are pushed onto a lock-free inbox which the wheel's
+ * ticking thread moves into the right buckets on every tick.
+ */
+class TimingWheel {
+  private final Task[] buckets;
+  private final int mask;
+  private final long tickNanos;
+  private final Consumer<List<Task>> expiry;
+  private final AtomicReference<Task> inbox = new AtomicReference<>();
+  // owned by the ticking thread
+  private long start = 0;
+  private long tick = 0;
+  private final List<Task> expired = new ArrayList<>();
+
+  /**
+   * @param size Number of buckets. Must be a power of 2
+   * @param tickNanos Duration of a tick (in ns)
+   * @param expiry Invoked on the ticking thread with the tasks due on a tick, if any. The list is
+   *     reused for the next tick
+   */
+  TimingWheel(int size, long tickNanos, Consumer<List<Task>> expiry) {
+    this.buckets = new Task[size];
+    this.mask = size - 1;
+    this.tickNanos = tickNanos;
+    this.expiry = expiry;
+  }
+
+  /**
+   * Park a task until the given deadline
+   *
+   * @param task The task
+   * @param deadline Deadline (in ns, see {@link System#nanoTime()})
+   */
+  void park(Task task, long deadline) {
+    task.deadline = deadline;
+    Task head;
+    do {
+      head = inbox.get();
+      task.next = head;
+    } while (!inbox.compareAndSet(head, task));
+  }
+
+  /** Tick until the calling thread is interrupted */
+  void run() {
+    start = System.nanoTime();
+    while (!Thread.currentThread().isInterrupted()) {
+      long deadline = start + (tick + 1) * tickNanos;
+      long now;
+      while ((now = System.nanoTime()) < deadline) {
+        LockSupport.parkNanos(deadline - now);
+        if (Thread.currentThread().isInterrupted()) {
+          return;
+        }
+      }
+      transfer();
+      expire(buckets[(int) (tick & mask)]);
+      tick++;
+    }
+  }
+
+  /** Move parked tasks from our inbox into their buckets */
+  private void transfer() {
+    Task task = inbox.getAndSet(null);
+    while (task != null) {
+      Task next = task.next;
+      long ticks = Math.max(tick, (task.deadline - start) / tickNanos);
+      task.rounds = (ticks - tick) / buckets.length;
+      int index = (int) (ticks & mask);
+      task.next = buckets[index];
+      buckets[index] = task;
+      task = next;
+    }
+  }
+
+  private void expire(Task head) {
+    int index = (int) (tick & mask);
+    Task previous = null;
+    Task task = head;
+    while (task != null) {
+      Task next = task.next;
+      if (task.rounds > 0) {
+        task.rounds--;
+        previous = task;
+      } else {
+        if (previous == null) {
+          buckets[index] = next;
+        } else {
+          previous.next = next;
+        }
+        task.next = null;
+        expired.add(task);
+      }
+      task = next;
+    }
+    if (!expired.isEmpty()) {
+      expiry.accept(expired);
+      expired.clear();
+    }
+  }
+}
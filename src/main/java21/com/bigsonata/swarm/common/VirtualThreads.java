@@ -0,0 +1,19 @@
+package com.bigsonata.swarm.common;
+
+/** JDK 21+ version of {@link VirtualThreads} */
+public class VirtualThreads {
+  public static boolean isSupported() {
+    return true;
+  }
+
+  /**
+   * Start a new virtual thread
+   *
+   * @param name The thread name
+   * @param runnable The task to run
+   * @return The started thread
+   */
+  public static Thread start(String name, Runnable runnable) {
+    return Thread.ofVirtual().name(name).start(runnable);
+  }
+}
@@ -0,0 +1,74 @@
+package com.bigsonata.swarm.common;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.assertTrue;
+
+public class TokenBucketTest {
+  private static final double RATE = 100000;
+  private static final long DURATION = TimeUnit.SECONDS.toNanos(1);
+
+  /**
+   * Let some threads take permits for a while
+   *
+   * @param threads Number of threads
+   * @param wait Whether a thread waits for its permit before taking the next one
+   * @param pause Time (in ns) each thread pauses between two permits
+   * @return The achieved rate (in permits per second)
+   */
+  private static double run(int threads, boolean wait, long pause) throws InterruptedException {
+    TokenBucket bucket = new TokenBucket(RATE);
+    AtomicLong permits = new AtomicLong(0);
+    long deadline = System.nanoTime() + DURATION;
+    Thread[] callers = new Thread[threads];
+    for (int i = 0; i < threads; i++) {
+      callers[i] =
+          new Thread(
+              () -> {
+                while (true) {
+                  long at = System.nanoTime() + bucket.reserve();
+                  if (at >= deadline) {
+                    return;
+                  }
+                  while (wait && System.nanoTime() < at) {
+                    LockSupport.parkNanos(at - System.nanoTime());
+                  }
+                  permits.incrementAndGet();
+                  if (pause > 0) {
+                    LockSupport.parkNanos(pause);
+                  }
+                }
+              });
+      callers[i].start();
+    }
+    for (Thread caller : callers) {
+      caller.join();
+    }
+    return permits.get() * 1e9 / DURATION;
+  }
+
+  /**
+   * @param rate The achieved rate (in permits per second)
+   * @param tolerance How far below the target it may be, e.g. callers waking up late
+   */
+  private static void assertRate(double rate, double tolerance) {
+    assertTrue("Too many permits: " + rate, rate <= RATE * 1.02);
+    assertTrue("Too few permits: " + rate, rate >= RATE * (1 - tolerance));
+  }
+
+  @Test
+  public void denseCallers() throws InterruptedException {
+    assertRate(run(4, true, 0), 0.1);
+  }
+
+  @Test
+  public void sparseCallers() throws InterruptedException {
+    // each of them calls at most a thousand times a second, i.e. twice the target altogether. A
+    // batch would go stale long before its thread uses it, so at most a tenth of it would be used
+    assertRate(run(200, true, TimeUnit.MILLISECONDS.toNanos(1)), 0.2);
+  }
+}
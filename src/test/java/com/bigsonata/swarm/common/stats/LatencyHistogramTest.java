@@ -0,0 +1,64 @@
+package com.bigsonata.swarm.common.stats;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+  private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999, 0.9999, 1};
+
+  @Test
+  public void percentilesOfLogNormalLatencies() {
+    // a median around 2 ms, with a long tail up to hundreds of ms
+    Random random = new Random(42);
+    long[] values = new long[1000000];
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 0; i < values.length; i++) {
+      values[i] = (long) Math.exp(Math.log(2000) + random.nextGaussian());
+      histogram.record(values[i]);
+    }
+    Arrays.sort(values);
+
+    assertEquals(values.length, histogram.getCount());
+    assertEquals(values[values.length - 1], histogram.getMax());
+    for (double percentile : PERCENTILES) {
+      long exact = values[(int) Math.ceil(percentile * values.length) - 1];
+      long actual = histogram.percentile(percentile);
+      assertTrue("p" + percentile * 100 + ": " + actual + " < " + exact, actual >= exact);
+      assertTrue(
+          "p" + percentile * 100 + ": " + actual + " too far above " + exact,
+          actual - exact <= exact * 0.002);
+    }
+  }
+
+  @Test
+  public void smallValuesAreExact() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long value = 0; value < 1000; value++) {
+      histogram.record(value);
+    }
+    assertEquals(499, histogram.percentile(0.5));
+    assertEquals(989, histogram.percentile(0.99));
+    assertEquals(999, histogram.percentile(1));
+  }
+
+  @Test
+  public void addAndCopy() {
+    LatencyHistogram small = new LatencyHistogram();
+    LatencyHistogram large = new LatencyHistogram();
+    small.record(10);
+    large.record(LatencyHistogram.MAX_VALUE * 2);
+    LatencyHistogram copy = small.copy();
+    copy.add(large);
+
+    assertEquals(1, small.getCount());
+    assertEquals(2, copy.getCount());
+    assertEquals(10, copy.percentile(0.5));
+    assertEquals(LatencyHistogram.MAX_VALUE, copy.getMax());
+    assertEquals(LatencyHistogram.MAX_VALUE, copy.percentile(1));
+  }
+}
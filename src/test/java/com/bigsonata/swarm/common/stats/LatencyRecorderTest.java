@@ -0,0 +1,40 @@
+package com.bigsonata.swarm.common.stats;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+
+public class LatencyRecorderTest {
+  private static final int RECORDS = 4000000;
+
+  @Test
+  public void swapsWhileWriterRecords() throws InterruptedException {
+    LatencyRecorder recorder = new LatencyRecorder();
+    CountDownLatch done = new CountDownLatch(1);
+    Thread writer =
+        new Thread(
+            () -> {
+              for (int i = 0; i < RECORDS; i++) {
+                recorder.record(1000 * (i % 4 + 1));
+              }
+              done.countDown();
+            });
+    writer.start();
+
+    // every latency ends up in exactly one of the histograms taken
+    LatencyHistogram total = new LatencyHistogram();
+    int swaps = 0;
+    while (done.getCount() > 0) {
+      total.add(recorder.swap());
+      swaps++;
+    }
+    writer.join();
+    total.add(recorder.swap());
+
+    assertEquals("after " + swaps + " swaps", RECORDS, total.getCount());
+    assertEquals(4000, total.getMax());
+    assertEquals(2500, total.getMean(), 1e-9);
+  }
+}